@@ -1,13 +1,29 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.*;
+import com.sun.net.httpserver.HttpServer;
 
 // Main Application Class
 public class OSSimulator {
     public static void main(String[] args) {
+        if (args.length > 0 && (args[0].equals("--cli") || args[0].equals("--script"))) {
+            System.exit(KernelShell.run(args));
+        }
         SwingUtilities.invokeLater(() -> {
             new MainFrame();
         });
@@ -17,9 +33,11 @@ public class OSSimulator {
 // Main Frame
 class MainFrame extends JFrame {
     private Kernel kernel;
+    private SimulationExecutor executor;
     
     public MainFrame() {
         kernel = new Kernel();
+        executor = new SimulationExecutor(kernel);
         setTitle("Tabinda OS - Operating System Simulator");
         setSize(700, 500);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -44,10 +62,10 @@ class MainFrame extends JFrame {
         JButton ioBtn = createMainButton("I/O Management");
         JButton otherBtn = createMainButton("Other Operations");
         
-        processBtn.addActionListener(e -> new ProcessManagementWindow(kernel));
-        memoryBtn.addActionListener(e -> new MemoryManagementWindow(kernel));
+        processBtn.addActionListener(e -> new ProcessManagementWindow(kernel, executor));
+        memoryBtn.addActionListener(e -> new MemoryManagementWindow(kernel, executor));
         ioBtn.addActionListener(e -> JOptionPane.showMessageDialog(this, "I/O Management Module"));
-        otherBtn.addActionListener(e -> new ConfigurationWindow(kernel));
+        otherBtn.addActionListener(e -> new ConfigurationWindow(kernel, executor));
         
         mainPanel.add(processBtn);
         mainPanel.add(memoryBtn);
@@ -95,6 +113,13 @@ class PCB {
     private int arrivalTime;
     private int remainingTime;
     private List<Integer> pageNumbers;
+    private Map<Integer, Integer> pageIndex; // page number -> position in pageNumbers, built on first lookup
+    private int parentId = -1;
+    
+    // Real-time parameters; a period of 0 means an ordinary process
+    private int period;
+    private int relativeDeadline;
+    private boolean sporadic;
     
     public PCB(String owner, int priority, int memoryReq, int burstTime, int arrivalTime) {
         this.processId = idCounter++;
@@ -108,6 +133,31 @@ class PCB {
         this.arrivalTime = arrivalTime;
     }
     
+    // Periodic real-time task: burstTime is the worst-case execution time of each job
+    public PCB(String owner, int priority, int memoryReq, int burstTime, int arrivalTime, int period, int deadline, boolean sporadic) {
+        this(owner, priority, memoryReq, burstTime, arrivalTime);
+        this.period = period;
+        this.relativeDeadline = deadline;
+        this.sporadic = sporadic;
+    }
+    
+    // Restores a PCB from a snapshot without consuming a new process id
+    PCB(int processId, ProcessState state, String owner, int priority, int memoryReq,
+            int burstTime, int arrivalTime, int remainingTime, List<Integer> pageNumbers) {
+        this.processId = processId;
+        this.state = state;
+        this.owner = owner;
+        this.priority = priority;
+        this.memoryRequirement = memoryReq;
+        this.burstTime = burstTime;
+        this.arrivalTime = arrivalTime;
+        this.remainingTime = remainingTime;
+        this.pageNumbers = pageNumbers;
+    }
+    
+    static int getNextId() { return idCounter; }
+    static void setNextId(int next) { idCounter = next; }
+    
     // Getters and Setters
     public int getProcessId() { return processId; }
     public ProcessState getState() { return state; }
@@ -121,10 +171,41 @@ class PCB {
     public String getOwner() { return owner; }
     public int getMemoryRequirement() { return memoryRequirement; }
     public List<Integer> getPageNumbers() { return pageNumbers; }
-    public void addPage(int pageNum) { pageNumbers.add(pageNum); }
+    public void addPage(int pageNum) {
+        pageNumbers.add(pageNum);
+        if (pageIndex != null) pageIndex.put(pageNum, pageNumbers.size() - 1);
+    }
+    public void replacePage(int oldPage, int newPage) {
+        int index = indexOfPage(oldPage);
+        pageNumbers.set(index, newPage);
+        pageIndex.remove(oldPage);
+        pageIndex.put(newPage, index);
+    }
+    // Position of a page in this process's address space, or -1 if it does not map the page
+    public int indexOfPage(int pageNum) {
+        if (pageIndex == null) {
+            pageIndex = new HashMap<>(pageNumbers.size() * 2);
+            for (int i = 0; i < pageNumbers.size(); i++) pageIndex.put(pageNumbers.get(i), i);
+        }
+        return pageIndex.getOrDefault(pageNum, -1);
+    }
+    public int getPeriod() { return period; }
+    public int getRelativeDeadline() { return relativeDeadline; }
+    public boolean isSporadic() { return sporadic; }
+    public boolean isRealTime() { return period > 0; }
+    public void setTiming(int period, int deadline, boolean sporadic) {
+        this.period = period;
+        this.relativeDeadline = deadline;
+        this.sporadic = sporadic;
+    }
+    public int getParentId() { return parentId; }
+    public void setParentId(int parentId) { this.parentId = parentId; }
     
     @Override
     public String toString() {
+        if (isRealTime()) {
+            return String.format("P%d [%s] C:%d T:%d D:%d%s", processId, state, burstTime, period, relativeDeadline, sporadic ? " sporadic" : "");
+        }
         return String.format("P%d [%s] Pri:%d Burst:%d AT:%d", processId, state, priority, burstTime, arrivalTime);
     }
 }
@@ -169,11 +250,297 @@ class Partition {
     public int getEndAddress() {
         return startAddress + size;
     }
+    
+    // Compaction moves and merges partitions
+    public void relocate(int startAddress) {
+        this.startAddress = startAddress;
+    }
+    
+    public void resize(int size) {
+        this.size = size;
+    }
+}
+
+// Ready Queue - FIFO order with constant-time removal of any process
+class ReadyQueue extends AbstractQueue<PCB> {
+    private LinkedHashSet<PCB> processes = new LinkedHashSet<>();
+    
+    public boolean offer(PCB pcb) {
+        processes.add(pcb);
+        return true;
+    }
+    
+    public PCB poll() {
+        Iterator<PCB> it = processes.iterator();
+        if (!it.hasNext()) return null;
+        PCB head = it.next();
+        it.remove();
+        return head;
+    }
+    
+    public PCB peek() { return processes.isEmpty() ? null : processes.iterator().next(); }
+    public boolean remove(Object o) { return processes.remove(o); }
+    public boolean contains(Object o) { return processes.contains(o); }
+    public Iterator<PCB> iterator() { return processes.iterator(); }
+    public int size() { return processes.size(); }
+}
+
+// Compaction Engine - relocates allocated partitions so free space merges into one hole. It plans the
+// cheaper of sliding every block down or emptying only the window that needs the fewest KB moved,
+// then carries the moves out incrementally under a per-step copy budget
+class CompactionEngine {
+    private List<int[]> plan = new ArrayList<>(); // {partition id, target start address, size}
+    private int next;
+    private int progress; // KB of plan[next] copied so far
+    private boolean pending; // planned and not yet merged
+    private int budgetKb = 128; // KB copied per step (one scheduler tick)
+    private String strategy = "none";
+    private long plannedKb;
+    private long movedKb;
+    private long moves;
+    private int compactions;
+    
+    // Plan moves leaving one free hole of at least 'request' KB; false when total free space is too small
+    public boolean plan(List<Partition> partitions, int request) {
+        int free = 0;
+        for (Partition p : partitions) if (!p.isAllocated()) free += p.getSize();
+        if (free < request) return false;
+        
+        // Sliding: pack allocated blocks towards address 0, in address order, until a big enough gap opens
+        List<int[]> slide = new ArrayList<>();
+        long slideCost = 0;
+        int cursor = partitions.isEmpty() ? 0 : partitions.get(0).getStartAddress();
+        for (Partition p : partitions) {
+            if (!p.isAllocated()) continue;
+            if (p.getStartAddress() - cursor >= request) break; // the gap below this block is already big enough
+            if (p.getStartAddress() != cursor) {
+                slide.add(new int[] {p.getId(), cursor, p.getSize()});
+                slideCost += p.getSize();
+            }
+            cursor += p.getSize();
+        }
+        
+        // Selective: for each start, the shortest run of partitions spanning the request; its allocated
+        // blocks must move out into holes elsewhere
+        List<long[]> windows = new ArrayList<>(); // {allocated KB, first, end}
+        int n = partitions.size();
+        long span = 0, allocated = 0;
+        for (int i = 0, j = 0; i < n; i++) {
+            while (j < n && span < request) {
+                Partition p = partitions.get(j++);
+                span += p.getSize();
+                if (p.isAllocated()) allocated += p.getSize();
+            }
+            if (span < request) break;
+            windows.add(new long[] {allocated, i, j});
+            Partition p = partitions.get(i);
+            span -= p.getSize();
+            if (p.isAllocated()) allocated -= p.getSize();
+        }
+        windows.sort(Comparator.comparingLong(w -> w[0]));
+        for (long[] w : windows) {
+            if (w[0] >= slideCost) break;
+            List<int[]> moves = evacuate(partitions, (int) w[1], (int) w[2]);
+            if (moves != null) {
+                start(moves, w[0], "selective relocation");
+                return true;
+            }
+        }
+        start(slide, slideCost, "sliding");
+        return true;
+    }
+    
+    // First-fit decreasing of the window's blocks into the free runs outside it, or null if they do not fit
+    private List<int[]> evacuate(List<Partition> partitions, int first, int end) {
+        List<int[]> holes = new ArrayList<>(); // {start, size}
+        for (int i = 0; i < partitions.size(); i++) {
+            Partition p = partitions.get(i);
+            if (i >= first && i < end || p.isAllocated()) continue;
+            int[] last = holes.isEmpty() ? null : holes.get(holes.size() - 1);
+            if (last != null && last[0] + last[1] == p.getStartAddress()) {
+                last[1] += p.getSize(); // adjacent free partitions form one run
+            } else {
+                holes.add(new int[] {p.getStartAddress(), p.getSize()});
+            }
+        }
+        List<Partition> blocks = new ArrayList<>();
+        for (int i = first; i < end; i++) {
+            if (partitions.get(i).isAllocated()) blocks.add(partitions.get(i));
+        }
+        blocks.sort(Comparator.comparingInt(Partition::getSize).reversed());
+        List<int[]> moves = new ArrayList<>(blocks.size());
+        for (Partition b : blocks) {
+            int[] hole = null;
+            for (int[] h : holes) {
+                if (h[1] >= b.getSize()) {
+                    hole = h;
+                    break;
+                }
+            }
+            if (hole == null) return null;
+            moves.add(new int[] {b.getId(), hole[0], b.getSize()});
+            hole[0] += b.getSize();
+            hole[1] -= b.getSize();
+        }
+        return moves;
+    }
+    
+    private void start(List<int[]> moves, long cost, String strategy) {
+        plan = moves;
+        next = 0;
+        progress = 0;
+        pending = true;
+        plannedKb = cost;
+        this.strategy = strategy;
+    }
+    
+    // Copy planned moves until the budget is spent; a block bigger than the budget is copied over several
+    // steps and relocates once all of it is copied. Merges the free space once the plan is done
+    public long step(List<Partition> partitions) {
+        long copied = 0;
+        while (pending && next < plan.size() && copied < budgetKb) {
+            int[] move = plan.get(next);
+            if (!isAllocated(partitions, move[0])) { // deallocated since the plan was made
+                next++;
+                progress = 0;
+                continue;
+            }
+            int chunk = (int) Math.min(budgetKb - copied, move[2] - progress);
+            progress += chunk;
+            copied += chunk;
+            if (progress >= move[2]) {
+                next++;
+                progress = 0;
+                relocate(partitions, move[0], move[1]);
+            }
+        }
+        if (pending && next >= plan.size()) {
+            mergeFree(partitions);
+            pending = false;
+            compactions++;
+        }
+        movedKb += copied;
+        return copied;
+    }
+    
+    public void runToCompletion(List<Partition> partitions) {
+        do {
+            step(partitions);
+        } while (isActive());
+    }
+    
+    private static boolean isAllocated(List<Partition> partitions, int id) {
+        for (Partition p : partitions) {
+            if (p.getId() == id) return p.isAllocated();
+        }
+        return false;
+    }
+    
+    // Move one allocated partition to 'target'; its old range becomes free
+    private int relocate(List<Partition> partitions, int id, int target) {
+        Partition block = null;
+        for (Partition p : partitions) {
+            if (p.getId() == id) {
+                block = p;
+                break;
+            }
+        }
+        if (block == null || !block.isAllocated()) return 0; // deallocated since the plan was made
+        int size = block.getSize();
+        int end = target + size;
+        int nextId = nextPartitionId(partitions);
+        List<Partition> result = new ArrayList<>(partitions.size() + 2);
+        for (Partition p : partitions) {
+            Partition q = p == block ? new Partition(nextId++, p.getStartAddress(), size) : p;
+            if (q.getEndAddress() <= target || q.getStartAddress() >= end) {
+                result.add(q);
+                continue;
+            }
+            if (q.isAllocated()) { // target no longer free: abandon the plan rather than overlap
+                cancel();
+                return 0;
+            }
+            if (q.getStartAddress() < target) result.add(new Partition(q.getId(), q.getStartAddress(), target - q.getStartAddress()));
+            if (q.getEndAddress() > end) result.add(new Partition(nextId++, end, q.getEndAddress() - end));
+        }
+        block.relocate(target);
+        result.add(block);
+        result.sort(Comparator.comparingInt(Partition::getStartAddress));
+        partitions.clear();
+        partitions.addAll(result);
+        moves++;
+        return size;
+    }
+    
+    static void mergeFree(List<Partition> partitions) {
+        List<Partition> merged = new ArrayList<>(partitions.size());
+        for (Partition p : partitions) {
+            Partition last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && !last.isAllocated() && !p.isAllocated()) {
+                last.resize(last.getSize() + p.getSize());
+            } else {
+                merged.add(p);
+            }
+        }
+        partitions.clear();
+        partitions.addAll(merged);
+    }
+    
+    static int nextPartitionId(List<Partition> partitions) {
+        int max = 0;
+        for (Partition p : partitions) max = Math.max(max, p.getId());
+        return max + 1;
+    }
+    
+    public void cancel() {
+        plan = new ArrayList<>();
+        next = 0;
+        progress = 0;
+        pending = false;
+    }
+    
+    // Moves still to do as {partition id, target, size} triples, for a snapshot; the first may be part copied
+    public int[] getRemainingPlan() {
+        int[] rest = new int[3 * (plan.size() - next)];
+        for (int i = next; i < plan.size(); i++) System.arraycopy(plan.get(i), 0, rest, 3 * (i - next), 3);
+        return rest;
+    }
+    
+    public int getProgress() { return progress; }
+    
+    // Continue a compaction captured by a snapshot
+    public void resume(int[] rest, int progress, String strategy) {
+        List<int[]> moves = new ArrayList<>(rest.length / 3);
+        long cost = -progress;
+        for (int i = 0; i < rest.length; i += 3) {
+            moves.add(new int[] {rest[i], rest[i + 1], rest[i + 2]});
+            cost += rest[i + 2];
+        }
+        start(moves, cost, strategy);
+        this.progress = progress;
+    }
+    
+    public boolean isActive() { return pending; }
+    
+    public long getRemainingKb() {
+        long kb = -progress;
+        for (int i = next; i < plan.size(); i++) kb += plan.get(i)[2];
+        return kb;
+    }
+    public int getBudgetKb() { return budgetKb; }
+    public void setBudgetKb(int budgetKb) { this.budgetKb = budgetKb; }
+    public String getStrategy() { return strategy; }
+    public long getPlannedKb() { return plannedKb; }
+    public long getMovedKb() { return movedKb; }
+    public long getMoves() { return moves; }
+    public int getCompactions() { return compactions; }
 }
 
 // Kernel - Core OS
 class Kernel {
+    static final int MAX_PAGE_SIZE = 2 << 20; // 2 MB, the largest huge page
     private List<PCB> allProcesses;
+    private Map<Integer, PCB> processIndex; // by process id
     private Queue<PCB> readyQueue;
     private Queue<PCB> blockedQueue;
     private List<PCB> suspendedProcesses;
@@ -181,19 +548,95 @@ class Kernel {
     private int pageSize = 4096; // Default 4KB
     private Map<Integer, Page> pageTable;
     private Semaphore mutex;
+    private long clock; // one tick per scheduling decision
+    private EventRecorder recorder;
+    private KernelMetrics metrics;
+    private int nextPageNumber;
+    
+    // Copy-on-write accounting
+    private long cowFaults;
+    private long cowBytesCopied;
+    private long cowFaultNanos;
+    
+    // Working-set based load control
+    private WorkingSetManager workingSets;
+    private int frameCapacity = 256; // physical page frames
+    private Deque<PCB> loadSuspended; // suspended by the load controller, oldest first
+    private List<Integer> evictionScratch;
+    private Random traceRandom;
+    private long loadSuspensions;
+    private long loadResumptions;
+    
+    // Demand paging: pages materialise on first touch, evicted pages go to swap
+    private Map<Integer, Page> swappedPages;
+    private SwapDevice swap;
+    private int prefetchDepth = 4;
+    private Map<Integer, int[]> faultStreams; // pid -> {last faulting page index, sequential run length}
+    private Map<Integer, Integer> scanCursors; // pid -> next page index for sequential scans
+    private List<Integer> reapedSlots;
+    private LatencyHistogram faultLatency;
+    private long minorFaults; // zero-fill
+    private long majorFaults; // read from swap
+    private long prefetchedPages;
+    private long prefetchHits;
+    
+    // Real-time scheduling
+    private RealTimeScheduler realTime;
+    private List<PCB> releasedScratch;
+    
+    // Hierarchical fair-share scheduling by owner
+    private FairShareScheduler fairShare;
+    private int sliceUsed; // ticks the running process has had since it was dispatched
+    
+    // Context-switch and cache warm-up costs
+    private ContextSwitchModel switchModel;
+    private PCB lastDispatched;
+    private Map<Integer, Double> switchDebt; // pid -> ticks of switching it still owes, fractions carried across dispatches
+    
+    // NUMA placement of resident pages
+    private NumaTopology numa;
+    private boolean numaConfigured; // node layout set explicitly rather than derived from frameCapacity
     
     // Fixed Partitioning
     private int totalMemory = 1024; // Total memory in KB
     private List<Partition> partitions;
+    private CompactionEngine compactor;
+    private List<PCB> pendingAllocations; // waiting for a compaction to finish
+    private Set<Integer> deferredAllocations; // pids that would have fit first fit but found a compaction running
+    private long allocationAttempts;
+    private long firstFitAllocations;  // succeeded without moving anything
+    private long compactedAllocations; // succeeded only thanks to compaction
     
     public Kernel() {
         allProcesses = new ArrayList<>();
-        readyQueue = new LinkedList<>();
+        processIndex = new HashMap<>();
+        readyQueue = new ReadyQueue();
         blockedQueue = new LinkedList<>();
         suspendedProcesses = new ArrayList<>();
         pageTable = new HashMap<>();
         mutex = new Semaphore(1);
+        recorder = new EventRecorder();
+        metrics = new KernelMetrics();
+        workingSets = new WorkingSetManager(100);
+        loadSuspended = new ArrayDeque<>();
+        evictionScratch = new ArrayList<>();
+        traceRandom = new Random();
+        swappedPages = new HashMap<>();
+        swap = new SwapDevice(pageSize);
+        faultStreams = new HashMap<>();
+        scanCursors = new HashMap<>();
+        reapedSlots = new ArrayList<>();
+        faultLatency = new LatencyHistogram();
+        realTime = new RealTimeScheduler();
+        releasedScratch = new ArrayList<>();
+        fairShare = new FairShareScheduler();
+        switchModel = new ContextSwitchModel();
+        switchDebt = new HashMap<>();
+        numa = new NumaTopology(2, Math.max(1, frameCapacity / 2), 80, 140);
         partitions = new ArrayList<>();
+        compactor = new CompactionEngine();
+        pendingAllocations = new ArrayList<>();
+        deferredAllocations = new HashSet<>();
         initializeFixedPartitions();
     }
     
@@ -211,18 +654,112 @@ class Kernel {
     }
     
     public String allocateFixedPartition(PCB process) {
+        long t = metrics.begin();
+        allocationAttempts++;
+        if (compactor.isActive()) {
+            // Holes are being rearranged; wait for the layout to settle
+            pendingAllocations.add(process);
+            for (Partition p : partitions) {
+                if (!p.isAllocated() && p.getSize() >= process.getMemoryRequirement()) {
+                    deferredAllocations.add(process.getProcessId()); // only waiting, not needing compaction
+                    break;
+                }
+            }
+            metrics.end(KernelOp.PARTITION_ALLOC, t);
+            return String.format("Memory compaction in progress (%d KB left to move).\nProcess P%d will be allocated when it completes.",
+                    compactor.getRemainingKb(), process.getProcessId());
+        }
         // First Fit algorithm
         for (Partition p : partitions) {
             if (!p.isAllocated() && p.getSize() >= process.getMemoryRequirement()) {
                 p.allocate(process.getProcessId());
+                firstFitAllocations++;
+                metrics.end(KernelOp.PARTITION_ALLOC, t);
                 return String.format("Process P%d allocated to Partition %d\nPartition Size: %d KB\nProcess Size: %d KB\nInternal Fragmentation: %d KB",
                         process.getProcessId(), p.getId(), p.getSize(), 
                         process.getMemoryRequirement(), p.getSize() - process.getMemoryRequirement());
             }
         }
+        // Enough free space in total, just not in one place: compact it into a single hole
+        if (compactor.plan(partitions, process.getMemoryRequirement())) {
+            metrics.end(KernelOp.PARTITION_ALLOC, t);
+            String strategy = compactor.getStrategy();
+            long planned = compactor.getPlannedKb();
+            pendingAllocations.add(process);
+            compactionStep();
+            if (!pendingAllocations.contains(process)) {
+                return String.format("Process P%d allocated after compaction (%s, %d KB moved)",
+                        process.getProcessId(), strategy, planned);
+            }
+            return String.format("Compacting memory by %s: %d KB to move at %d KB per tick.\nProcess P%d will be allocated when compaction completes.",
+                    strategy, planned, compactor.getBudgetKb(), process.getProcessId());
+        }
+        metrics.end(KernelOp.PARTITION_ALLOC_FAILED, t);
         return "No suitable partition found! Process P" + process.getProcessId() + " cannot be allocated.";
     }
     
+    // One budgeted slice of compaction; once the layout is final, place the processes waiting for it
+    private void compactionStep() {
+        long t = metrics.begin();
+        compactor.step(partitions);
+        metrics.end(KernelOp.COMPACTION, t);
+        boolean replanned = false;
+        while (!compactor.isActive() && !pendingAllocations.isEmpty()) {
+            PCB process = pendingAllocations.get(0);
+            if (process.getState() == ProcessState.TERMINATED || !allProcesses.contains(process)) {
+                pendingAllocations.remove(0);
+                deferredAllocations.remove(process.getProcessId());
+                replanned = false;
+            } else if (allocateInHole(process)) {
+                pendingAllocations.remove(0);
+                if (deferredAllocations.remove(process.getProcessId())) firstFitAllocations++;
+                else compactedAllocations++;
+                replanned = false;
+            } else if (!replanned && compactor.plan(partitions, process.getMemoryRequirement())) {
+                replanned = true; // earlier waiters took the hole; compact again for this one
+                compactor.step(partitions);
+            } else {
+                pendingAllocations.remove(0); // no longer fits even after compaction
+                deferredAllocations.remove(process.getProcessId());
+                replanned = false;
+            }
+        }
+    }
+    
+    // First fit into the compacted free space, splitting off exactly what the process needs
+    private boolean allocateInHole(PCB process) {
+        int need = process.getMemoryRequirement();
+        for (int i = 0; i < partitions.size(); i++) {
+            Partition p = partitions.get(i);
+            if (p.isAllocated() || p.getSize() < need) continue;
+            if (p.getSize() > need) {
+                partitions.add(i + 1, new Partition(CompactionEngine.nextPartitionId(partitions),
+                        p.getStartAddress() + need, p.getSize() - need));
+                p.resize(need);
+            }
+            p.allocate(process.getProcessId());
+            return true;
+        }
+        return false;
+    }
+    
+    // Gather all free memory into one hole, by whichever strategy moves less
+    public String compactMemory() {
+        if (compactor.isActive()) {
+            compactor.runToCompletion(partitions);
+            compactionStep();
+        }
+        int free = 0;
+        for (Partition p : partitions) if (!p.isAllocated()) free += p.getSize();
+        if (free == 0) {
+            return "No free memory to compact";
+        }
+        long before = compactor.getMovedKb();
+        compactor.plan(partitions, free);
+        compactor.runToCompletion(partitions);
+        return String.format("Memory compacted by %s: %d KB moved", compactor.getStrategy(), compactor.getMovedKb() - before);
+    }
+    
     public String deallocateFixedPartition(int partitionId) {
         for (Partition p : partitions) {
             if (p.getId() == partitionId && p.isAllocated()) {
@@ -234,86 +771,187 @@ class Kernel {
         return "Partition " + partitionId + " is not allocated or doesn't exist!";
     }
     
+    // Back to the original fixed layout, all free
     public void resetPartitions() {
-        for (Partition p : partitions) {
-            p.deallocate();
-        }
+        compactor.cancel();
+        pendingAllocations.clear();
+        deferredAllocations.clear();
+        partitions.clear();
+        initializeFixedPartitions();
     }
     
     public PCB createProcess(String owner, int priority, int memoryReq, int burstTime, int arrivalTime) {
+        long t = metrics.begin();
         PCB pcb = new PCB(owner, priority, memoryReq, burstTime, arrivalTime);
         allProcesses.add(pcb);
+        processIndex.put(pcb.getProcessId(), pcb);
         allocateMemory(pcb);
-        pcb.setState(ProcessState.READY);
+        setProcessState(pcb, ProcessState.READY);
         readyQueue.add(pcb);
+        metrics.end(KernelOp.CREATE, t);
         return pcb;
     }
     
     public void destroyProcess(PCB pcb) {
+        long t = metrics.begin();
         if (pcb == runningProcess) runningProcess = null;
+        if (pcb.isRealTime()) realTime.remove(pcb);
+        fairShare.forget(pcb);
+        switchModel.forget(pcb);
+        if (pcb == lastDispatched) lastDispatched = null;
+        switchDebt.remove(pcb.getProcessId());
         allProcesses.remove(pcb);
+        processIndex.remove(pcb.getProcessId());
         readyQueue.remove(pcb);
         blockedQueue.remove(pcb);
         suspendedProcesses.remove(pcb);
         deallocateMemory(pcb);
+        metrics.end(KernelOp.DESTROY, t);
     }
     
     public void suspendProcess(PCB pcb) {
-        pcb.setState(ProcessState.SUSPENDED);
+        long t = metrics.begin();
+        setProcessState(pcb, ProcessState.SUSPENDED);
+        if (pcb.isRealTime()) realTime.pause(pcb);
         readyQueue.remove(pcb);
+        blockedQueue.remove(pcb);
         if (runningProcess == pcb) runningProcess = null;
         suspendedProcesses.add(pcb);
+        metrics.end(KernelOp.SUSPEND, t);
     }
     
     public void resumeProcess(PCB pcb) {
         if (pcb.getState() == ProcessState.SUSPENDED) {
+            long t = metrics.begin();
             suspendedProcesses.remove(pcb);
-            pcb.setState(ProcessState.READY);
-            readyQueue.add(pcb);
+            if (pcb.isRealTime()) {
+                setProcessState(pcb, ProcessState.BLOCKED); // waits for its next release
+                realTime.resume(pcb, clock);
+            } else {
+                setProcessState(pcb, ProcessState.READY);
+                readyQueue.add(pcb);
+            }
+            metrics.end(KernelOp.RESUME, t);
         }
     }
     
     public void blockProcess(PCB pcb) {
-        pcb.setState(ProcessState.BLOCKED);
+        long t = metrics.begin();
+        setProcessState(pcb, ProcessState.BLOCKED);
+        if (pcb.isRealTime()) realTime.pause(pcb);
         readyQueue.remove(pcb);
         if (runningProcess == pcb) runningProcess = null;
         blockedQueue.add(pcb);
+        metrics.end(KernelOp.BLOCK, t);
     }
     
     public void wakeupProcess(PCB pcb) {
         if (pcb.getState() == ProcessState.BLOCKED) {
+            long t = metrics.begin();
             blockedQueue.remove(pcb);
-            pcb.setState(ProcessState.READY);
-            readyQueue.add(pcb);
+            if (pcb.isRealTime()) {
+                realTime.resume(pcb, clock); // BLOCKED until its next release
+            } else {
+                setProcessState(pcb, ProcessState.READY);
+                readyQueue.add(pcb);
+            }
+            metrics.end(KernelOp.WAKEUP, t);
         }
     }
     
     public void dispatchProcess(PCB pcb) {
+        long t = metrics.begin();
         if (runningProcess != null) {
-            runningProcess.setState(ProcessState.READY);
-            readyQueue.add(runningProcess);
+            requeueRunning();
         }
         runningProcess = pcb;
-        pcb.setState(ProcessState.RUNNING);
+        sliceUsed = 0;
+        setProcessState(pcb, ProcessState.RUNNING);
+        if (pcb != lastDispatched) {
+            switchDebt.merge(pcb.getProcessId(), switchModel.dispatch(pcb, clock), Double::sum);
+            lastDispatched = pcb;
+        }
+        metrics.end(KernelOp.DISPATCH, t);
+    }
+    
+    // Put the running process back where it waits for the CPU
+    private void requeueRunning() {
+        setProcessState(runningProcess, ProcessState.READY);
+        if (runningProcess.isRealTime()) {
+            realTime.preempt(runningProcess);
+        } else {
+            readyQueue.add(runningProcess);
+        }
+    }
+    
+    // The running process used up its burst: a real-time job completes, anything else terminates
+    private void completeRunning() {
+        PCB done = runningProcess;
+        runningProcess = null;
+        if (done.isRealTime()) {
+            realTime.completeJob(done, clock + 1);
+            setProcessState(done, ProcessState.BLOCKED);
+        } else {
+            setProcessState(done, ProcessState.TERMINATED);
+        }
     }
     
     public void changePriority(PCB pcb, int newPriority) {
         pcb.setPriority(newPriority);
     }
     
+    private void setProcessState(PCB pcb, ProcessState state) {
+        pcb.setState(state);
+        recorder.recordTransition(clock, pcb.getProcessId(), state);
+        workingSets.setActive(pcb.getProcessId(), state != ProcessState.SUSPENDED && state != ProcessState.TERMINATED);
+        if (!pcb.isRealTime()) {
+            if (state == ProcessState.READY) fairShare.enqueue(pcb);
+            else if (state == ProcessState.TERMINATED) fairShare.forget(pcb);
+            else fairShare.dequeue(pcb);
+        }
+        if (state == ProcessState.TERMINATED) {
+            switchModel.forget(pcb);
+            switchDebt.remove(pcb.getProcessId());
+        }
+    }
+    
+    // Whether 'pcb' spends this tick switching in instead of making progress; it pays its own
+    // switches a whole tick at a time, and a fraction left over waits for its next dispatch
+    private boolean payingSwitch(PCB pcb) {
+        Double debt = switchDebt.get(pcb.getProcessId());
+        if (debt == null || debt < 1) return false;
+        switchDebt.put(pcb.getProcessId(), debt - 1);
+        return true;
+    }
+    
+    // Under affinity, equal candidates go to the one cheaper to switch to
+    private boolean warmer(PCB a, PCB b) {
+        return switchModel.isAffinity() && switchModel.expectedCost(a, clock) < switchModel.expectedCost(b, clock);
+    }
+    
+    // Advance the simulated clock, sampling who held the CPU during the tick that just ended
+    private void tick(PCB executed) {
+        if (compactor.isActive()) compactionStep();
+        if (!loadSuspended.isEmpty() && runningProcess == null && readyQueue.isEmpty()) resumeLoadSuspended(true);
+        recorder.recordTick(clock, executed == null ? -1 : executed.getProcessId(), readyQueue.size());
+        clock++;
+    }
+    
     // Scheduling Algorithms
     public void scheduleFCFS() {
         if (!readyQueue.isEmpty() && runningProcess == null) {
             PCB next = readyQueue.poll();
             dispatchProcess(next);
         }
+        tick(runningProcess);
     }
     
     public void scheduleSJF() {
         if (runningProcess == null && !readyQueue.isEmpty()) {
             PCB shortest = null;
             for (PCB p : readyQueue) {
-                if (shortest == null || p.getBurstTime() < shortest.getBurstTime()) {
+                if (shortest == null || p.getBurstTime() < shortest.getBurstTime()
+                        || p.getBurstTime() == shortest.getBurstTime() && warmer(p, shortest)) {
                     shortest = p;
                 }
             }
@@ -322,131 +960,4140 @@ class Kernel {
                 dispatchProcess(shortest);
             }
         }
+        tick(runningProcess);
     }
     
     public void scheduleRoundRobin() {
+        PCB executed = runningProcess;
         if (runningProcess != null) {
-            runningProcess.setRemainingTime(runningProcess.getRemainingTime() - 1);
+            boolean lost = payingSwitch(runningProcess);
+            switchModel.ran(runningProcess, clock, lost);
+            if (!lost) runningProcess.setRemainingTime(runningProcess.getRemainingTime() - 1);
             if (runningProcess.getRemainingTime() <= 0) {
-                runningProcess.setState(ProcessState.TERMINATED);
-                runningProcess = null;
+                completeRunning();
             } else if (Math.random() > 0.7) { // Simulate time quantum
-                runningProcess.setState(ProcessState.READY);
-                readyQueue.add(runningProcess);
+                requeueRunning();
                 runningProcess = null;
             }
         }
         if (runningProcess == null && !readyQueue.isEmpty()) {
             dispatchProcess(readyQueue.poll());
         }
+        tick(executed);
+    }
+    
+    // Group scheduling: the least-served runnable owner group gets the CPU for a slice, and a group
+    // that exhausts its quota is throttled until its period rolls over. Weights and quotas only
+    // apply while this scheduler runs; the other policies ignore group configuration
+    public void scheduleFairShare() {
+        fairShare.refill(clock);
+        if (runningProcess != null && sliceUsed >= fairShare.getSlice() && fairShare.hasRunnable()) {
+            requeueRunning();
+            runningProcess = null;
+        }
+        if (runningProcess == null) {
+            PCB next = fairShare.pick();
+            if (next != null) {
+                readyQueue.remove(next);
+                dispatchProcess(next);
+            }
+        }
+        
+        PCB executed = runningProcess;
+        if (executed != null) {
+            sliceUsed++;
+            boolean lost = payingSwitch(executed); // switching time still counts against the group's share
+            switchModel.ran(executed, clock, lost);
+            if (!lost) executed.setRemainingTime(executed.getRemainingTime() - 1);
+            boolean throttled = fairShare.charge(executed, clock);
+            if (executed.getRemainingTime() <= 0) {
+                completeRunning();
+            } else if (throttled) {
+                requeueRunning();
+                runningProcess = null;
+            }
+        }
+        tick(executed);
+    }
+    
+    public String configureGroup(String path, int weight, int quota, int period) {
+        return fairShare.configure(path, weight, quota, period);
+    }
+    
+    public String configureContextSwitch(double switchCost, double warmupCost, double cacheDecay, int cpus, boolean affinity) {
+        if (switchCost < 0 || warmupCost < 0 || cacheDecay <= 0 || cpus <= 0) {
+            return "Costs must not be negative; cache decay and CPU count must be positive";
+        }
+        switchModel.configure(switchCost, warmupCost, cacheDecay, cpus, affinity);
+        return String.format("Switch %.2f ticks + up to %.2f ticks warm-up (decay %.0f ticks), %d CPUs, affinity %s",
+                switchCost, warmupCost, cacheDecay, cpus, affinity ? "on" : "off");
+    }
+    
+    // Real-time task admission; the current policy's schedulability test decides
+    public String createRealTimeTask(String owner, int wcet, int period, int deadline, boolean sporadic, RealTimePolicy policy) {
+        String reason = realTime.admissionTest(policy, wcet, period, deadline);
+        if (reason != null) {
+            return "Task rejected: " + reason;
+        }
+        long t = metrics.begin();
+        PCB pcb = new PCB(owner, 0, 0, wcet, (int) clock, period, deadline, sporadic);
+        allProcesses.add(pcb);
+        processIndex.put(pcb.getProcessId(), pcb);
+        setProcessState(pcb, ProcessState.BLOCKED); // waiting for its first release
+        realTime.admit(pcb, clock);
+        metrics.end(KernelOp.CREATE, t);
+        return String.format("Task P%d admitted under %s (U = %.3f)", pcb.getProcessId(), policy, realTime.getUtilisation());
+    }
+    
+    public void scheduleEDF() {
+        scheduleRealTime(RealTimePolicy.EDF);
+    }
+    
+    public void scheduleRM() {
+        scheduleRealTime(RealTimePolicy.RM);
+    }
+    
+    // One preemptive tick: release due jobs, run the highest-priority job, and give the
+    // CPU to ordinary processes only when no real-time job is ready
+    private void scheduleRealTime(RealTimePolicy policy) {
+        realTime.setPolicy(policy);
+        releasedScratch.clear();
+        realTime.releaseJobs(clock, releasedScratch);
+        for (PCB p : releasedScratch) {
+            if (p != runningProcess) setProcessState(p, ProcessState.READY);
+        }
+        
+        PCB top = realTime.peekReady();
+        if (top != null && (runningProcess == null || !runningProcess.isRealTime()
+                || realTime.higherPriority(top, runningProcess))) {
+            dispatchProcess(realTime.dispatchReady(clock));
+        } else if (runningProcess == null && !readyQueue.isEmpty()) {
+            dispatchProcess(readyQueue.poll());
+        }
+        
+        PCB executed = runningProcess;
+        if (executed != null) {
+            boolean lost = payingSwitch(executed);
+            switchModel.ran(executed, clock, lost);
+            if (!lost) executed.setRemainingTime(executed.getRemainingTime() - 1);
+            if (executed.getRemainingTime() <= 0) {
+                completeRunning();
+            }
+        }
+        tick(executed);
     }
     
     // Memory Management
+    // Reserve the process's virtual pages; frames are only taken when a page is first referenced
     private void allocateMemory(PCB pcb) {
         int pagesNeeded = (int) Math.ceil((double) pcb.getMemoryRequirement() / pageSize);
         for (int i = 0; i < pagesNeeded; i++) {
-            int pageNum = pageTable.size();
-            pageTable.put(pageNum, new Page(pageNum, pcb.getProcessId()));
-            pcb.addPage(pageNum);
+            pcb.addPage(nextPageNumber++);
+        }
+    }
+    
+    // Extend a process's virtual address space by 'count' pages, e.g. as a trace touches new addresses
+    public void reservePages(PCB pcb, int count) {
+        for (int i = 0; i < count; i++) {
+            pcb.addPage(nextPageNumber++);
         }
     }
     
     private void deallocateMemory(PCB pcb) {
+        workingSets.remove(pcb.getProcessId());
         for (int pageNum : pcb.getPageNumbers()) {
-            pageTable.remove(pageNum);
+            Page page = pageTable.get(pageNum);
+            if (page != null && page.unshare()) {
+                pageTable.remove(pageNum);
+                numa.release(page);
+            } else if (page != null) {
+                evictPage(pageNum); // still shared, but maybe no longer in anyone's resident set
+            }
+            Page swapped = swappedPages.get(pageNum);
+            if (swapped != null && swapped.unshare()) {
+                swappedPages.remove(pageNum);
+                swap.freeSlot(swapped.getSwapSlot());
+            }
+        }
+        loadSuspended.remove(pcb);
+        faultStreams.remove(pcb.getProcessId());
+        scanCursors.remove(pcb.getProcessId());
+        numa.pin(pcb.getProcessId(), -1);
+    }
+    
+    // fork(): the child shares every resident page of the parent copy-on-write
+    public PCB forkProcess(PCB parent) {
+        long t = metrics.begin();
+        PCB child = new PCB(parent.getOwner(), parent.getPriority(), parent.getMemoryRequirement(),
+                parent.getRemainingTime(), (int) clock);
+        child.setParentId(parent.getProcessId());
+        for (int pageNum : parent.getPageNumbers()) {
+            Page page = pageTable.get(pageNum);
+            Page swapped = swappedPages.get(pageNum);
+            if (page != null) {
+                page.share();
+                child.addPage(pageNum);
+                workingSets.addResident(child.getProcessId(), pageNum);
+            } else if (swapped != null) {
+                swapped.share();
+                child.addPage(pageNum);
+            } else {
+                child.addPage(nextPageNumber++); // never touched: the child's zero page can be private
+            }
+        }
+        allProcesses.add(child);
+        processIndex.put(child.getProcessId(), child);
+        setProcessState(child, ProcessState.READY);
+        readyQueue.add(child);
+        metrics.end(KernelOp.FORK, t);
+        return child;
+    }
+    
+    // Simulated store to one of the process's pages; shared pages are split first
+    public String writePage(PCB pcb, int pageNum) {
+        if (pcb.indexOfPage(pageNum) < 0) {
+            return "P" + pcb.getProcessId() + " does not map Page #" + pageNum;
+        }
+        referencePage(pcb, pageNum);
+        Page page = pageTable.get(pageNum);
+        if (page == null) {
+            return "Page #" + pageNum + " was evicted before the write";
+        }
+        if (!page.isShared()) {
+            page.access();
+            return "Page #" + pageNum + " written in place";
+        }
+        long start = System.nanoTime();
+        long t = metrics.begin();
+        page.unshare();
+        int copyNum = nextPageNumber++;
+        Page copy = new Page(copyNum, pcb.getProcessId());
+        copy.access();
+        pageTable.put(copyNum, copy);
+        placePage(copy, pcb.getProcessId());
+        pcb.replacePage(pageNum, copyNum);
+        workingSets.replaceResident(pcb.getProcessId(), pageNum, copyNum);
+        evictPage(pageNum); // the original stays only while another sharer holds it resident
+        cowFaults++;
+        cowBytesCopied += pageSize;
+        metrics.end(KernelOp.COW_FAULT, t);
+        cowFaultNanos += System.nanoTime() - start;
+        return String.format("COW fault: P%d copied Page #%d to Page #%d", pcb.getProcessId(), pageNum, copyNum);
+    }
+    
+    // Write to random pages of random processes to trigger copy-on-write splits
+    public void simulatePageWrites(int writes) {
+        if (allProcesses.isEmpty()) return;
+        Random rand = new Random();
+        for (int i = 0; i < writes; i++) {
+            PCB pcb = allProcesses.get(rand.nextInt(allProcesses.size()));
+            List<Integer> pages = pcb.getPageNumbers();
+            if (!pages.isEmpty()) {
+                writePage(pcb, pages.get(rand.nextInt(pages.size())));
+            }
+        }
+    }
+    
+    // Bytes that would be duplicated if every sharer held a private copy
+    public long getSharedBytesSaved() {
+        long saved = 0;
+        for (Page page : pageTable.values()) {
+            saved += (long) (page.getRefCount() - 1) * pageSize;
+        }
+        return saved;
+    }
+    
+    // One memory reference by a process: faults the page back in if needed, trims the process
+    // to its working-set allocation, then lets the load controller react to thrashing
+    public boolean referencePage(PCB pcb, int pageNum) {
+        Page page = pageTable.get(pageNum);
+        boolean fault = page == null;
+        if (fault) {
+            page = handlePageFault(pcb, pageNum);
+        } else if (page.isPrefetched()) {
+            page.setPrefetched(false);
+            prefetchHits++;
+        }
+        page.access();
+        numa.access(page, pcb.getProcessId());
+        
+        evictionScratch.clear();
+        workingSets.reference(pcb.getProcessId(), pageNum, fault, evictionScratch);
+        for (int victim : evictionScratch) {
+            evictPage(victim);
+        }
+        controlLoad();
+        return fault;
+    }
+    
+    // Zero-fill a never-touched page or read it back from swap, then read ahead on sequential faults
+    private Page handlePageFault(PCB pcb, int pageNum) {
+        long start = System.nanoTime();
+        long t = metrics.begin();
+        Page page = swappedPages.remove(pageNum);
+        if (page != null) {
+            swap.readPage(page.getSwapSlot());
+            swap.freeSlot(page.getSwapSlot());
+            page.setSwapSlot(-1);
+            majorFaults++;
+        } else {
+            page = new Page(pageNum, pcb.getProcessId());
+            minorFaults++;
+        }
+        pageTable.put(pageNum, page);
+        placePage(page, pcb.getProcessId());
+        readAhead(pcb, pageNum);
+        metrics.end(KernelOp.PAGE_FAULT, t);
+        faultLatency.record(System.nanoTime() - start);
+        return page;
+    }
+    
+    // Two faults on consecutive pages of a process start asynchronous read-ahead of the following swapped pages
+    private void readAhead(PCB pcb, int pageNum) {
+        swap.reapCompletedReads(reapedSlots);
+        for (int slot : reapedSlots) swap.freeSlot(slot);
+        reapedSlots.clear();
+        if (prefetchDepth <= 0) return;
+        
+        List<Integer> pages = pcb.getPageNumbers();
+        int index = pcb.indexOfPage(pageNum);
+        int[] stream = faultStreams.computeIfAbsent(pcb.getProcessId(), k -> new int[] {-2, 0});
+        stream[1] = index == stream[0] + 1 ? stream[1] + 1 : 0;
+        stream[0] = index;
+        if (stream[1] < 1) return;
+        
+        for (int i = index + 1; i <= index + prefetchDepth && i < pages.size(); i++) {
+            int next = pages.get(i);
+            Page swapped = swappedPages.get(next);
+            if (swapped == null) continue; // resident already, or never touched (cheap to zero-fill on demand)
+            if (!numa.place(swapped, pcb.getProcessId())) break; // read-ahead never reclaims from a full bind set
+            swappedPages.remove(next);
+            swap.readPageAsync(swapped.getSwapSlot()); // slot is freed once the read completes
+            swapped.setSwapSlot(-1);
+            swapped.setPrefetched(true);
+            pageTable.put(next, swapped);
+            workingSets.addResident(pcb.getProcessId(), next);
+            prefetchedPages++;
+        }
+    }
+    
+    // NUMA placement for a newly resident page; a full bind set swaps out its least recently used private page
+    private void placePage(Page page, int pid) {
+        while (!numa.place(page, pid)) {
+            Page victim = null;
+            for (Page p : pageTable.values()) {
+                if (p != page && !p.isShared() && numa.isBound(p.getNode())
+                        && (victim == null || p.getLastAccessed() < victim.getLastAccessed())) {
+                    victim = p;
+                }
+            }
+            if (victim == null) {
+                numa.overcommit(page, pid);
+                return;
+            }
+            workingSets.removeResident(victim.getProcessId(), victim.getPageNumber());
+            swapOut(victim);
+            numa.recordReclaim();
+        }
+    }
+    
+    // Write a page out to swap once no process holds it resident; a shared page leaves memory
+    // when the last of its sharers drops it
+    private void evictPage(int pageNum) {
+        Page page = pageTable.get(pageNum);
+        if (page != null && !workingSets.isHeld(pageNum)) {
+            swapOut(page);
+        }
+    }
+    
+    private void swapOut(Page page) {
+        long t = metrics.begin();
+        pageTable.remove(page.getPageNumber());
+        numa.release(page);
+        int slot = swap.allocateSlot();
+        swap.writePage(slot, page.getPageNumber());
+        page.setSwapSlot(slot);
+        page.setPrefetched(false);
+        swappedPages.put(page.getPageNumber(), page);
+        metrics.end(KernelOp.PAGE_EVICTION, t);
+    }
+    
+    // Suspend the largest runnable working set while thrashing; bring suspended work back once it fits
+    private void controlLoad() {
+        if (workingSets.isThrashing(frameCapacity)) {
+            PCB victim = null;
+            int active = 0;
+            for (PCB p : allProcesses) {
+                ProcessState st = p.getState();
+                if (st != ProcessState.READY && st != ProcessState.RUNNING) continue;
+                active++;
+                if (victim == null || workingSets.getWorkingSetSize(p.getProcessId()) > workingSets.getWorkingSetSize(victim.getProcessId())) {
+                    victim = p;
+                }
+            }
+            if (victim != null && active > 1) {
+                suspendProcess(victim);
+                for (int pageNum : workingSets.releaseResident(victim.getProcessId())) {
+                    evictPage(pageNum);
+                }
+                loadSuspended.addLast(victim);
+                loadSuspensions++;
+            }
+        } else {
+            resumeLoadSuspended(false);
+        }
+    }
+    
+    // Resume the oldest load-suspended process if its working set fits again; 'idle' resumes it
+    // regardless, since with nothing else runnable no reference will ever make room
+    private void resumeLoadSuspended(boolean idle) {
+        while (!loadSuspended.isEmpty() && loadSuspended.peekFirst().getState() != ProcessState.SUSPENDED) {
+            loadSuspended.pollFirst(); // resumed or destroyed by someone else
+        }
+        if (loadSuspended.isEmpty()) return;
+        PCB head = loadSuspended.peekFirst();
+        if (idle || workingSets.canAdmit(head.getProcessId(), frameCapacity)) {
+            loadSuspended.pollFirst();
+            resumeProcess(head);
+            loadResumptions++;
+        }
+    }
+    
+    // One step of a synthetic reference trace: a runnable process touches one of its pages,
+    // 90% of the time inside a hot region that drifts every few thousand references
+    public void referenceStep() {
+        PCB pcb = pickTraceProcess();
+        if (pcb == null || pcb.getPageNumbers().isEmpty()) return;
+        
+        List<Integer> pages = pcb.getPageNumbers();
+        int hot = Math.max(1, pages.size() / 5);
+        int index;
+        if (traceRandom.nextDouble() < 0.9) {
+            int phase = (int) (workingSets.getReferences() / 5000);
+            index = (phase * hot + traceRandom.nextInt(hot)) % pages.size();
+        } else {
+            index = traceRandom.nextInt(pages.size());
+        }
+        referencePage(pcb, pages.get(index));
+    }
+    
+    // The running process, else a few random tries for a ready one
+    private PCB pickTraceProcess() {
+        PCB pcb = runningProcess;
+        for (int tries = 0; pcb == null && tries < 8 && !allProcesses.isEmpty(); tries++) {
+            PCB candidate = allProcesses.get(traceRandom.nextInt(allProcesses.size()));
+            if (candidate.getState() == ProcessState.READY) pcb = candidate;
+        }
+        return pcb;
+    }
+    
+    public long getCowFaults() { return cowFaults; }
+    public long getCowBytesCopied() { return cowBytesCopied; }
+    public long getCowFaultNanos() { return cowFaultNanos; }
+    
+    public String applyLRU(int maxPages) {
+        if (pageTable.size() <= maxPages) {
+            return "No pages need to be replaced. Current pages: " + pageTable.size() + ", Max allowed: " + maxPages;
+        }
+        
+        // Find the least recently used page
+        Page lruPage = null;
+        int lruPageNum = -1;
+        long oldestTime = Long.MAX_VALUE;
+        
+        for (Map.Entry<Integer, Page> entry : pageTable.entrySet()) {
+            if (entry.getValue().getLastAccessed() < oldestTime) {
+                oldestTime = entry.getValue().getLastAccessed();
+                lruPage = entry.getValue();
+                lruPageNum = entry.getKey();
+            }
+        }
+        
+        if (lruPage != null) {
+            swapOut(lruPage);
+            return String.format("Swapped out Page #%d (Process P%d) - Least Recently Used\nRemaining pages: %d", 
+                    lruPageNum, lruPage.getProcessId(), pageTable.size());
+        }
+        
+        return "No pages to remove";
+    }
+    
+    public void simulatePageAccess() {
+        // Simulate random page accesses to create different access times
+        if (!allProcesses.isEmpty()) {
+            Random rand = new Random();
+            for (int i = 0; i < 3; i++) {
+                PCB pcb = allProcesses.get(rand.nextInt(allProcesses.size()));
+                if (pcb.getPageNumbers().isEmpty()) continue;
+                int randomPage = pcb.getPageNumbers().get(rand.nextInt(pcb.getPageNumbers().size()));
+                try {
+                    Thread.sleep(10); // Small delay to create time difference
+                } catch (InterruptedException e) {}
+                referencePage(pcb, randomPage);
+            }
+        }
+    }
+    
+    // One step of a sequential scan: a runnable process touches the page after the one it touched last
+    public void sequentialScanStep() {
+        PCB pcb = pickTraceProcess();
+        if (pcb == null || pcb.getPageNumbers().isEmpty()) return;
+        List<Integer> pages = pcb.getPageNumbers();
+        int index = scanCursors.getOrDefault(pcb.getProcessId(), 0) % pages.size();
+        scanCursors.put(pcb.getProcessId(), index + 1);
+        referencePage(pcb, pages.get(index));
+    }
+    
+    // Snapshot / Restore
+    public KernelSnapshot snapshot() {
+        KernelSnapshot s = new KernelSnapshot();
+        s.clock = clock;
+        s.nextProcessId = PCB.getNextId();
+        s.pageSize = pageSize;
+        s.totalMemory = totalMemory;
+        s.runningPid = runningProcess == null ? -1 : runningProcess.getProcessId();
+        s.nextPageNumber = nextPageNumber;
+        s.cowFaults = cowFaults;
+        s.cowBytesCopied = cowBytesCopied;
+        s.cowFaultNanos = cowFaultNanos;
+        
+        int n = allProcesses.size();
+        s.pids = new int[n];
+        s.states = new int[n];
+        s.priorities = new int[n];
+        s.memoryRequirements = new int[n];
+        s.burstTimes = new int[n];
+        s.arrivalTimes = new int[n];
+        s.remainingTimes = new int[n];
+        s.ownerIndexes = new int[n];
+        s.parentIds = new int[n];
+        s.periods = new int[n];
+        s.deadlines = new int[n];
+        s.sporadicFlags = new int[n];
+        s.pageOffsets = new int[n + 1];
+        Map<String, Integer> ownerIndex = new HashMap<>();
+        int totalPages = 0;
+        for (PCB p : allProcesses) totalPages += p.getPageNumbers().size();
+        s.pages = new int[totalPages];
+        
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            PCB p = allProcesses.get(i);
+            s.pids[i] = p.getProcessId();
+            s.states[i] = p.getState().ordinal();
+            s.priorities[i] = p.getPriority();
+            s.memoryRequirements[i] = p.getMemoryRequirement();
+            s.burstTimes[i] = p.getBurstTime();
+            s.arrivalTimes[i] = p.getArrivalTime();
+            s.remainingTimes[i] = p.getRemainingTime();
+            s.ownerIndexes[i] = ownerIndex.computeIfAbsent(p.getOwner(), k -> ownerIndex.size());
+            s.parentIds[i] = p.getParentId();
+            s.periods[i] = p.getPeriod();
+            s.deadlines[i] = p.getRelativeDeadline();
+            s.sporadicFlags[i] = p.isSporadic() ? 1 : 0;
+            s.pageOffsets[i] = pos;
+            for (int page : p.getPageNumbers()) s.pages[pos++] = page;
+        }
+        s.pageOffsets[n] = pos;
+        s.owners = new String[ownerIndex.size()];
+        for (Map.Entry<String, Integer> e : ownerIndex.entrySet()) s.owners[e.getValue()] = e.getKey();
+        
+        s.readyPids = pidsOf(readyQueue);
+        s.blockedPids = pidsOf(blockedQueue);
+        s.suspendedPids = pidsOf(suspendedProcesses);
+        s.loadSuspendedPids = pidsOf(loadSuspended);
+        
+        int pageCount = pageTable.size();
+        s.pageNumbers = new int[pageCount];
+        s.pageOwners = new int[pageCount];
+        s.pageAccessCounts = new int[pageCount];
+        s.pageRefCounts = new int[pageCount];
+        s.pageCopyOnWrite = new int[pageCount];
+        s.pageLastAccessed = new long[pageCount];
+        int j = 0;
+        for (Map.Entry<Integer, Page> e : pageTable.entrySet()) {
+            Page page = e.getValue();
+            s.pageNumbers[j] = e.getKey();
+            s.pageOwners[j] = page.getProcessId();
+            s.pageAccessCounts[j] = page.getAccessCount();
+            s.pageLastAccessed[j] = page.getLastAccessed();
+            s.pageRefCounts[j] = page.getRefCount();
+            s.pageCopyOnWrite[j] = page.isCopyOnWrite() ? 1 : 0;
+            j++;
+        }
+        
+        int swapCount = swappedPages.size();
+        s.swapPageNumbers = new int[swapCount];
+        s.swapOwners = new int[swapCount];
+        s.swapAccessCounts = new int[swapCount];
+        s.swapRefCounts = new int[swapCount];
+        s.swapCopyOnWrite = new int[swapCount];
+        s.swapSlots = new int[swapCount];
+        s.swapLastAccessed = new long[swapCount];
+        j = 0;
+        for (Page page : swappedPages.values()) {
+            s.swapPageNumbers[j] = page.getPageNumber();
+            s.swapOwners[j] = page.getProcessId();
+            s.swapAccessCounts[j] = page.getAccessCount();
+            s.swapRefCounts[j] = page.getRefCount();
+            s.swapCopyOnWrite[j] = page.isCopyOnWrite() ? 1 : 0;
+            s.swapSlots[j] = page.getSwapSlot();
+            s.swapLastAccessed[j] = page.getLastAccessed();
+            j++;
+        }
+        
+        int m = partitions.size();
+        s.partitionIds = new int[m];
+        s.partitionStarts = new int[m];
+        s.partitionSizes = new int[m];
+        s.partitionPids = new int[m];
+        for (int i = 0; i < m; i++) {
+            Partition p = partitions.get(i);
+            s.partitionIds[i] = p.getId();
+            s.partitionStarts[i] = p.getStartAddress();
+            s.partitionSizes[i] = p.getSize();
+            s.partitionPids[i] = p.isAllocated() ? p.getProcessId() : -1;
+        }
+        List<PCB> waiting = new ArrayList<>(pendingAllocations);
+        waiting.removeIf(p -> processIndex.get(p.getProcessId()) != p); // destroyed while waiting
+        s.pendingAllocationPids = pidsOf(waiting);
+        s.deferredAllocationPids = deferredAllocations.stream().filter(processIndex::containsKey).mapToInt(Integer::intValue).toArray();
+        s.compactionPlan = compactor.isActive() ? compactor.getRemainingPlan() : new int[0];
+        s.compactionState = compactor.isActive()
+                ? new int[] {compactor.getProgress(), compactor.getStrategy().startsWith("selective") ? 1 : 0} : new int[0];
+        return s;
+    }
+    
+    private static int[] pidsOf(Collection<PCB> processes) {
+        int[] pids = new int[processes.size()];
+        int i = 0;
+        for (PCB p : processes) pids[i++] = p.getProcessId();
+        return pids;
+    }
+    
+    // Replace the kernel state with a snapshot; the event history restarts from the restored clock.
+    // Validation and opening the new swap device come first, so a snapshot failing either leaves the
+    // kernel untouched; after that the fields are replaced one after another
+    public void restore(KernelSnapshot s) {
+        s.validate();
+        SwapDevice restoredSwap = new SwapDevice(s.pageSize);
+        ProcessState[] stateValues = ProcessState.values();
+        int n = s.getProcessCount();
+        Map<Integer, PCB> byPid = new HashMap<>(n * 2);
+        allProcesses = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            List<Integer> pages = new ArrayList<>(s.pageOffsets[i + 1] - s.pageOffsets[i]);
+            for (int k = s.pageOffsets[i]; k < s.pageOffsets[i + 1]; k++) pages.add(s.pages[k]);
+            PCB pcb = new PCB(s.pids[i], stateValues[s.states[i]], s.owners[s.ownerIndexes[i]], s.priorities[i],
+                    s.memoryRequirements[i], s.burstTimes[i], s.arrivalTimes[i], s.remainingTimes[i], pages);
+            pcb.setParentId(s.parentIds[i]);
+            pcb.setTiming(s.periods[i], s.deadlines[i], s.sporadicFlags[i] != 0);
+            allProcesses.add(pcb);
+            byPid.put(pcb.getProcessId(), pcb);
+        }
+        processIndex = byPid;
+        
+        readyQueue = new ReadyQueue();
+        for (int pid : s.readyPids) readyQueue.add(byPid.get(pid));
+        blockedQueue = new LinkedList<>();
+        for (int pid : s.blockedPids) blockedQueue.add(byPid.get(pid));
+        suspendedProcesses = new ArrayList<>(s.suspendedPids.length);
+        for (int pid : s.suspendedPids) suspendedProcesses.add(byPid.get(pid));
+        runningProcess = s.runningPid < 0 ? null : byPid.get(s.runningPid);
+        
+        pageTable = new HashMap<>(s.pageNumbers.length * 2);
+        for (int i = 0; i < s.pageNumbers.length; i++) {
+            pageTable.put(s.pageNumbers[i], new Page(s.pageNumbers[i], s.pageOwners[i], s.pageLastAccessed[i],
+                    s.pageAccessCounts[i], s.pageRefCounts[i], s.pageCopyOnWrite[i] != 0));
+        }
+        
+        swap.close();
+        swap = restoredSwap;
+        swappedPages = new HashMap<>(s.swapPageNumbers.length * 2);
+        for (int i = 0; i < s.swapPageNumbers.length; i++) {
+            Page page = new Page(s.swapPageNumbers[i], s.swapOwners[i], s.swapLastAccessed[i],
+                    s.swapAccessCounts[i], s.swapRefCounts[i], s.swapCopyOnWrite[i] != 0);
+            page.setSwapSlot(s.swapSlots[i]);
+            swappedPages.put(page.getPageNumber(), page);
+        }
+        swap.restoreSlots(s.swapSlots);
+        faultStreams.clear();
+        scanCursors.clear();
+        
+        // Real-time tasks are re-admitted and release a fresh job at the restored clock
+        RealTimePolicy policy = realTime.getPolicy();
+        realTime = new RealTimeScheduler();
+        realTime.setPolicy(policy);
+        Set<PCB> userBlocked = new HashSet<>(blockedQueue);
+        for (PCB pcb : allProcesses) {
+            if (!pcb.isRealTime() || pcb.getState() == ProcessState.TERMINATED) continue;
+            realTime.admit(pcb, s.clock);
+            if (pcb.getState() == ProcessState.SUSPENDED || userBlocked.contains(pcb)) {
+                realTime.pause(pcb);
+            } else if (pcb != runningProcess) {
+                pcb.setState(ProcessState.BLOCKED);
+            }
+        }
+        if (runningProcess != null && runningProcess.isRealTime()) {
+            runningProcess.setState(ProcessState.BLOCKED); // its job restarts with the others
+            runningProcess = null;
+        }
+        
+        // Group configuration survives a restore; usage and virtual runtimes start afresh
+        fairShare.reset();
+        for (PCB pcb : readyQueue) fairShare.enqueue(pcb);
+        if (runningProcess != null) fairShare.track(runningProcess); // real-time ones were sent back to BLOCKED above
+        
+        // Caches start cold after a restore
+        switchModel.reset();
+        lastDispatched = runningProcess;
+        switchDebt.clear();
+        
+        partitions = new ArrayList<>(s.partitionIds.length);
+        for (int i = 0; i < s.partitionIds.length; i++) {
+            Partition p = new Partition(s.partitionIds[i], s.partitionStarts[i], s.partitionSizes[i]);
+            if (s.partitionPids[i] >= 0) p.allocate(s.partitionPids[i]);
+            partitions.add(p);
+        }
+        clock = s.clock;
+        nextPageNumber = s.nextPageNumber;
+        cowFaults = s.cowFaults;
+        cowBytesCopied = s.cowBytesCopied;
+        cowFaultNanos = s.cowFaultNanos;
+        pageSize = s.pageSize;
+        totalMemory = s.totalMemory;
+        PCB.setNextId(Math.max(PCB.getNextId(), s.nextProcessId));
+        recorder = new EventRecorder(clock);
+        workingSets = new WorkingSetManager(workingSets.getWindow());
+        loadSuspended.clear();
+        for (int pid : s.loadSuspendedPids) loadSuspended.addLast(byPid.get(pid));
+        for (PCB pcb : allProcesses) {
+            boolean active = pcb.getState() != ProcessState.SUSPENDED && pcb.getState() != ProcessState.TERMINATED;
+            workingSets.setActive(pcb.getProcessId(), active);
+            for (int pageNum : pcb.getPageNumbers()) {
+                if (pageTable.containsKey(pageNum)) workingSets.addResident(pcb.getProcessId(), pageNum);
+            }
+        }
+        placeResidentPages();
+        
+        // Last, once clock and counters are restored: an interrupted compaction carries on from the
+        // captured move and its waiters keep their place
+        compactor.cancel();
+        pendingAllocations.clear();
+        for (int pid : s.pendingAllocationPids) pendingAllocations.add(byPid.get(pid));
+        deferredAllocations.clear();
+        for (int pid : s.deferredAllocationPids) deferredAllocations.add(pid);
+        if (s.compactionState.length > 0) {
+            compactor.resume(s.compactionPlan, s.compactionState[0], s.compactionState[1] == 1 ? "selective relocation" : "sliding");
+        } else if (!pendingAllocations.isEmpty()) {
+            compactionStep();
+        }
+    }
+    
+    // Redo NUMA placement of every resident page as if its owner had just touched it
+    private void placeResidentPages() {
+        numa.clearUsage();
+        for (Page page : pageTable.values()) {
+            if (!numa.place(page, page.getProcessId())) numa.overcommit(page, page.getProcessId());
+        }
+    }
+    
+    // New node layout; resident pages are placed again and the access statistics restart
+    public String configureNuma(int nodes, int capacityPerNode, int localLatency, int remoteLatency) {
+        if (nodes <= 0) return "Node count must be positive";
+        return configureNuma(NumaTopology.uniform(nodes, capacityPerNode), NumaTopology.uniform(nodes, localLatency),
+                NumaTopology.uniform(nodes, remoteLatency));
+    }
+    
+    // One capacity and local/remote latency per node
+    public String configureNuma(int[] capacities, int[] localLatencies, int[] remoteLatencies) {
+        int nodes = capacities.length;
+        if (nodes == 0 || localLatencies.length != nodes || remoteLatencies.length != nodes) {
+            return "Give one capacity, local and remote latency per node";
+        }
+        for (int i = 0; i < nodes; i++) {
+            if (capacities[i] <= 0 || localLatencies[i] <= 0 || remoteLatencies[i] <= 0) {
+                return "Node capacities and latencies must be positive";
+            }
+        }
+        numaConfigured = true;
+        rebuildNuma(capacities, localLatencies, remoteLatencies);
+        StringBuilder sb = new StringBuilder(nodes + " NUMA nodes:");
+        for (int i = 0; i < nodes; i++) {
+            sb.append(String.format(" [%d: %d frames, %d/%d ns]", i, capacities[i], localLatencies[i], remoteLatencies[i]));
+        }
+        return sb.toString();
+    }
+    
+    private void rebuildNuma(int[] capacities, int[] localLatencies, int[] remoteLatencies) {
+        NumaTopology old = numa;
+        numa = new NumaTopology(capacities, localLatencies, remoteLatencies);
+        numa.setPolicy(old.getPolicy());
+        numa.setMigration(old.isMigration());
+        numa.setMigrationThreshold(old.getMigrationThreshold());
+        for (Map.Entry<Integer, Integer> e : old.getPinnedNodes().entrySet()) {
+            if (e.getValue() < capacities.length) numa.pin(e.getKey(), e.getValue());
+        }
+        BitSet bind = old.getBindNodes();
+        bind.clear(capacities.length, Math.max(capacities.length, bind.length()));
+        if (!bind.isEmpty()) numa.setBindNodes(bind);
+        placeResidentPages();
+    }
+    
+    public String bindNuma(BitSet nodes) {
+        numa.setBindNodes(nodes);
+        if (numa.getPolicy() == NumaPolicy.BIND) placeResidentPages();
+        return "BIND allocates from nodes " + nodes;
+    }
+    
+    public String pinProcess(int pid, int node) {
+        if (node >= numa.getNodes().length) {
+            return "Node " + node + " does not exist";
+        }
+        numa.pin(pid, node);
+        return node < 0 ? "P" + pid + " unpinned" : "P" + pid + " now runs on node " + node;
+    }
+    
+    public void clearPages() {
+        pageTable.clear();
+        numa.clearUsage();
+    }
+    
+    // Getters
+    public List<PCB> getAllProcesses() { return allProcesses; }
+    public PCB getProcess(int pid) { return processIndex.get(pid); }
+    public Queue<PCB> getReadyQueue() { return readyQueue; }
+    public Queue<PCB> getBlockedQueue() { return blockedQueue; }
+    public PCB getRunningProcess() { return runningProcess; }
+    public int getPageSize() { return pageSize; }
+    public void setPageSize(int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + " bytes");
+        }
+        this.pageSize = size;
+        if (swappedPages.isEmpty() && swap.getPendingReads() == 0 && swap.getSlotSize() != size) {
+            swap.close();
+            swap = new SwapDevice(size); // slots are sized when the device is opened
+        }
+    }
+    public Map<Integer, Page> getPageTable() { return pageTable; }
+    public Semaphore getMutex() { return mutex; }
+    public long getClock() { return clock; }
+    public EventRecorder getRecorder() { return recorder; }
+    public KernelMetrics getMetrics() { return metrics; }
+    public WorkingSetManager getWorkingSets() { return workingSets; }
+    public int getFrameCapacity() { return frameCapacity; }
+    public void setFrameCapacity(int frames) {
+        this.frameCapacity = frames;
+        if (!numaConfigured) {
+            // The default two-node layout splits physical memory evenly until the user lays out nodes
+            int perNode = Math.max(1, frames / 2);
+            NumaNode first = numa.getNodes()[0];
+            rebuildNuma(NumaTopology.uniform(2, perNode), NumaTopology.uniform(2, first.localLatency),
+                    NumaTopology.uniform(2, first.remoteLatency));
+        }
+    }
+    public long getLoadSuspensions() { return loadSuspensions; }
+    public long getLoadResumptions() { return loadResumptions; }
+    public Map<Integer, Page> getSwappedPages() { return swappedPages; }
+    public SwapDevice getSwap() { return swap; }
+    public int getPrefetchDepth() { return prefetchDepth; }
+    public void setPrefetchDepth(int depth) { this.prefetchDepth = depth; }
+    public LatencyHistogram getFaultLatency() { return faultLatency; }
+    public RealTimeScheduler getRealTime() { return realTime; }
+    public FairShareScheduler getFairShare() { return fairShare; }
+    public ContextSwitchModel getSwitchModel() { return switchModel; }
+    public NumaTopology getNuma() { return numa; }
+    public CompactionEngine getCompactor() { return compactor; }
+    public List<PCB> getPendingAllocations() { return pendingAllocations; }
+    public long getAllocationAttempts() { return allocationAttempts; }
+    public long getFirstFitAllocations() { return firstFitAllocations; }
+    public long getCompactedAllocations() { return compactedAllocations; }
+    public long getMinorFaults() { return minorFaults; }
+    public long getMajorFaults() { return majorFaults; }
+    public long getPrefetchedPages() { return prefetchedPages; }
+    public long getPrefetchHits() { return prefetchHits; }
+}
+
+// Page Class
+class Page {
+    private int pageNumber;
+    private int processId;
+    private long lastAccessed;
+    private int accessCount;
+    private int refCount = 1; // number of processes mapping this page
+    private boolean copyOnWrite;
+    private int swapSlot = -1; // slot holding the page while it is swapped out
+    private boolean prefetched; // brought in by read-ahead and not referenced since
+    private int node = -1; // NUMA node holding the frame while resident
+    private int numaCandidate = -1;
+    private int numaVotes;
+    
+    public Page(int pageNumber, int processId) {
+        this.pageNumber = pageNumber;
+        this.processId = processId;
+        this.lastAccessed = System.currentTimeMillis();
+        this.accessCount = 0;
+    }
+    
+    Page(int pageNumber, int processId, long lastAccessed, int accessCount, int refCount, boolean copyOnWrite) {
+        this.pageNumber = pageNumber;
+        this.processId = processId;
+        this.lastAccessed = lastAccessed;
+        this.accessCount = accessCount;
+        this.refCount = refCount;
+        this.copyOnWrite = copyOnWrite;
+    }
+    
+    public int getPageNumber() { return pageNumber; }
+    public int getProcessId() { return processId; }
+    public long getLastAccessed() { return lastAccessed; }
+    public int getAccessCount() { return accessCount; }
+    public void access() { 
+        lastAccessed = System.currentTimeMillis(); 
+        accessCount++;
+    }
+    
+    public int getSwapSlot() { return swapSlot; }
+    public void setSwapSlot(int slot) { this.swapSlot = slot; }
+    public boolean isPrefetched() { return prefetched; }
+    public void setPrefetched(boolean prefetched) { this.prefetched = prefetched; }
+    public int getNode() { return node; }
+    public void setNode(int node) { this.node = node; }
+    public int getNumaVotes() { return numaVotes; }
+    public void resetNumaVotes() { numaCandidate = -1; numaVotes = 0; }
+    
+    // Boyer-Moore majority vote over the nodes referencing the page; returns the current candidate
+    public int voteNuma(int cpuNode) {
+        if (numaVotes == 0) {
+            numaCandidate = cpuNode;
+            numaVotes = 1;
+        } else if (numaCandidate == cpuNode) {
+            numaVotes++;
+        } else {
+            numaVotes--;
+        }
+        return numaCandidate;
+    }
+    
+    public int getRefCount() { return refCount; }
+    public boolean isCopyOnWrite() { return copyOnWrite; }
+    public boolean isShared() { return refCount > 1; }
+    
+    // Another process maps this page; writes must now copy first
+    public void share() {
+        refCount++;
+        copyOnWrite = true;
+    }
+    
+    // A process dropped its mapping; returns true when nobody maps the page any more
+    public boolean unshare() {
+        refCount--;
+        if (refCount == 1) copyOnWrite = false;
+        return refCount <= 0;
+    }
+}
+
+// NUMA placement policies
+enum NumaPolicy {
+    FIRST_TOUCH, INTERLEAVE, BIND
+}
+
+// NUMA Node - a memory node with its own frames and access latencies
+class NumaNode {
+    int id;
+    int capacity;        // page frames
+    int localLatency;    // ns, from CPUs on this node
+    int remoteLatency;   // ns, from CPUs on any other node
+    int used;
+    long localAccesses;
+    long remoteAccesses; // references to this node's memory from other nodes
+    
+    NumaNode(int id, int capacity, int localLatency, int remoteLatency) {
+        this.id = id;
+        this.capacity = capacity;
+        this.localLatency = localLatency;
+        this.remoteLatency = remoteLatency;
+    }
+}
+
+// NUMA Topology - places resident pages on nodes, costs every reference as local or remote and
+// optionally migrates a page to the node whose CPUs reference it most
+class NumaTopology {
+    private NumaNode[] nodes;
+    private NumaPolicy policy = NumaPolicy.FIRST_TOUCH;
+    private boolean migration;
+    private int migrationThreshold = 8; // net votes from one remote node before a page moves
+    private Map<Integer, Integer> pinnedNodes; // pid -> node whose CPUs run it
+    private BitSet bindNodes = new BitSet(); // nodes BIND may allocate from
+    
+    private long accesses;
+    private long remoteAccesses;
+    private long totalLatency; // ns
+    private long migrations;
+    private long spills;       // pages placed off their preferred node because it was full
+    private long reclaims;     // pages swapped out to make room on a full bind set
+    private long overcommits;  // pages placed beyond capacity because nothing on the bind set could be reclaimed
+    
+    public NumaTopology(int nodeCount, int capacityPerNode, int localLatency, int remoteLatency) {
+        this(uniform(nodeCount, capacityPerNode), uniform(nodeCount, localLatency), uniform(nodeCount, remoteLatency));
+    }
+    
+    public NumaTopology(int[] capacities, int[] localLatencies, int[] remoteLatencies) {
+        nodes = new NumaNode[capacities.length];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new NumaNode(i, capacities[i], localLatencies[i], remoteLatencies[i]);
+        }
+        pinnedNodes = new HashMap<>();
+        bindNodes.set(0);
+    }
+    
+    static int[] uniform(int count, int value) {
+        int[] values = new int[count];
+        Arrays.fill(values, value);
+        return values;
+    }
+    
+    // A comma-separated list with one value per node, or a single value repeated for every node
+    static int[] perNode(String list, int count) {
+        String[] parts = list.split(",");
+        if (parts.length != 1 && parts.length != count) {
+            throw new IllegalArgumentException("expected 1 or " + count + " values in '" + list + "'");
+        }
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            String part = parts[parts.length == 1 ? 0 : i].trim();
+            try {
+                values[i] = Integer.parseInt(part);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("not a number: " + part);
+            }
+        }
+        return values;
+    }
+    
+    static String join(int[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int v : values) sb.append(sb.length() == 0 ? "" : ",").append(v);
+        return sb.toString();
+    }
+    
+    // Node whose CPUs run the process: its pinning, else spread by process id
+    public int cpuNode(int pid) {
+        Integer pinned = pinnedNodes.get(pid);
+        return pinned != null ? pinned : Math.floorMod(pid, nodes.length);
+    }
+    
+    public void pin(int pid, int node) {
+        if (node < 0) pinnedNodes.remove(pid);
+        else pinnedNodes.put(pid, node);
+    }
+    
+    // A frame for a page faulted in by 'pid'; falls back to the emptiest node when the preferred one is full.
+    // BIND never leaves the bind set: it takes the CPU's node if bound, else the emptiest bound node, and
+    // returns false when every bound node is full so the caller can reclaim
+    public boolean place(Page page, int pid) {
+        if (policy == NumaPolicy.BIND) {
+            int node = bindTarget(cpuNode(pid));
+            if (nodes[node].used >= nodes[node].capacity) return false;
+            assign(page, node);
+            return true;
+        }
+        int node = policy == NumaPolicy.INTERLEAVE ? Math.floorMod(page.getPageNumber(), nodes.length) : cpuNode(pid);
+        if (nodes[node].used >= nodes[node].capacity) {
+            int emptiest = node;
+            for (NumaNode n : nodes) {
+                if (n.capacity - n.used > nodes[emptiest].capacity - nodes[emptiest].used) emptiest = n.id;
+            }
+            if (emptiest != node) {
+                node = emptiest;
+                spills++;
+            }
+        }
+        assign(page, node);
+        return true;
+    }
+    
+    // Last resort for a full bind set with nothing reclaimable: exceed the emptiest bound node's capacity
+    public void overcommit(Page page, int pid) {
+        assign(page, bindTarget(cpuNode(pid)));
+        overcommits++;
+    }
+    
+    private int bindTarget(int cpu) {
+        if (bindNodes.get(cpu) && nodes[cpu].used < nodes[cpu].capacity) return cpu;
+        int best = -1;
+        for (int i = bindNodes.nextSetBit(0); i >= 0; i = bindNodes.nextSetBit(i + 1)) {
+            if (best < 0 || nodes[i].capacity - nodes[i].used > nodes[best].capacity - nodes[best].used) best = i;
+        }
+        return best;
+    }
+    
+    private void assign(Page page, int node) {
+        page.setNode(node);
+        page.resetNumaVotes();
+        nodes[node].used++;
+    }
+    
+    public boolean isBound(int node) {
+        return node >= 0 && bindNodes.get(node);
+    }
+    
+    public void recordReclaim() {
+        reclaims++;
+    }
+    
+    public void release(Page page) {
+        if (page.getNode() >= 0) nodes[page.getNode()].used--;
+        page.setNode(-1);
+    }
+    
+    // One reference to a resident page from the CPUs of process 'pid'
+    public void access(Page page, int pid) {
+        int cpu = cpuNode(pid);
+        NumaNode home = nodes[page.getNode()];
+        accesses++;
+        if (cpu == home.id) {
+            home.localAccesses++;
+            totalLatency += home.localLatency;
+        } else {
+            home.remoteAccesses++;
+            remoteAccesses++;
+            totalLatency += home.remoteLatency;
+        }
+        // Bound memory stays where the policy put it
+        if (migration && policy != NumaPolicy.BIND) {
+            int candidate = page.voteNuma(cpu); // streaming majority vote over accessing nodes
+            if (candidate != home.id && page.getNumaVotes() >= migrationThreshold
+                    && nodes[candidate].used < nodes[candidate].capacity) {
+                home.used--;
+                nodes[candidate].used++;
+                page.setNode(candidate);
+                page.resetNumaVotes();
+                migrations++;
+            }
+        }
+    }
+    
+    public void clearUsage() {
+        for (NumaNode n : nodes) n.used = 0;
+    }
+    
+    public void resetStatistics() {
+        for (NumaNode n : nodes) {
+            n.localAccesses = 0;
+            n.remoteAccesses = 0;
+        }
+        accesses = 0;
+        remoteAccesses = 0;
+        totalLatency = 0;
+        migrations = 0;
+        spills = 0;
+        reclaims = 0;
+        overcommits = 0;
+    }
+    
+    public NumaNode[] getNodes() { return nodes; }
+    public NumaPolicy getPolicy() { return policy; }
+    public void setPolicy(NumaPolicy policy) { this.policy = policy; }
+    public boolean isMigration() { return migration; }
+    public void setMigration(boolean migration) { this.migration = migration; }
+    public int getMigrationThreshold() { return migrationThreshold; }
+    public void setMigrationThreshold(int threshold) { this.migrationThreshold = threshold; }
+    public Map<Integer, Integer> getPinnedNodes() { return pinnedNodes; }
+    public BitSet getBindNodes() { return (BitSet) bindNodes.clone(); }
+    
+    // An empty set or a node that does not exist is rejected; the caller re-places resident pages
+    public void setBindNodes(BitSet bind) {
+        if (bind.isEmpty() || bind.length() > nodes.length) {
+            throw new IllegalArgumentException("Bind nodes must be a non-empty subset of 0-" + (nodes.length - 1));
+        }
+        bindNodes = (BitSet) bind.clone();
+    }
+    
+    public long getAccesses() { return accesses; }
+    public long getRemoteAccesses() { return remoteAccesses; }
+    public double getRemoteRatio() { return accesses == 0 ? 0 : (double) remoteAccesses / accesses; }
+    public double getEffectiveLatency() { return accesses == 0 ? 0 : (double) totalLatency / accesses; }
+    public long getMigrations() { return migrations; }
+    public long getSpills() { return spills; }
+    public long getReclaims() { return reclaims; }
+    public long getOvercommits() { return overcommits; }
+}
+
+// Real-time scheduling policies
+enum RealTimePolicy {
+    EDF, RM
+}
+
+// Per-task release state and statistics for the real-time scheduler
+class RealTimeTask {
+    PCB pcb;
+    long nextRelease;
+    long release;      // release time of the current job
+    long deadline;     // absolute deadline of the current job
+    int seq;           // current job number; stale heap entries carry an older one
+    boolean pending;   // current job released and not finished
+    boolean running;
+    boolean started;   // current job has had the CPU at least once
+    long jobs;
+    long misses;
+    long minStartLatency = Long.MAX_VALUE;
+    long maxStartLatency;
+    long maxResponse;
+    long rmDemand;     // C + interference of every higher-RM-priority task over the effective deadline
+    
+    RealTimeTask(PCB pcb) {
+        this.pcb = pcb;
+    }
+    
+    // Jobs are firm: one still running at the next release is replaced, so no deadline reaches past the period
+    long effectiveDeadline() { return Math.min(pcb.getPeriod(), pcb.getRelativeDeadline()); }
+    
+    long getStartJitter() { return jobs == 0 || minStartLatency == Long.MAX_VALUE ? 0 : maxStartLatency - minStartLatency; }
+}
+
+// Entry in the ready heap; identifies one job of a task
+class RealTimeJob {
+    RealTimeTask task;
+    int seq;
+    long deadline;
+    
+    RealTimeJob(RealTimeTask task) {
+        this.task = task;
+        this.seq = task.seq;
+        this.deadline = task.deadline;
+    }
+    
+    boolean isStale() { return seq != task.seq || !task.pending || task.running; }
+}
+
+// Real-Time Scheduler - periodic/sporadic jobs kept in release-time and priority-ordered heaps
+class RealTimeScheduler {
+    private static final Comparator<RealTimeTask> BY_RELEASE =
+            Comparator.<RealTimeTask>comparingLong(t -> t.nextRelease).thenComparingInt(t -> t.pcb.getProcessId());
+    private static final Comparator<RealTimeJob> BY_DEADLINE =
+            Comparator.<RealTimeJob>comparingLong(j -> j.deadline).thenComparingInt(j -> j.task.pcb.getProcessId());
+    private static final Comparator<RealTimeJob> BY_PERIOD =
+            Comparator.<RealTimeJob>comparingInt(j -> j.task.pcb.getPeriod()).thenComparingInt(j -> j.task.pcb.getProcessId());
+    private static final Comparator<RealTimeTask> BY_RM_PRIORITY =
+            Comparator.<RealTimeTask>comparingInt(t -> t.pcb.getPeriod()).thenComparingInt(t -> t.pcb.getProcessId());
+    
+    private RealTimePolicy policy = RealTimePolicy.EDF;
+    private PriorityQueue<RealTimeTask> releaseHeap; // every schedulable task, by next release
+    private PriorityQueue<RealTimeJob> readyHeap;    // released jobs, highest priority first
+    private Map<Integer, RealTimeTask> tasks;        // admitted task set by process id
+    private TreeSet<RealTimeTask> byRmPriority;      // the same set in rate-monotonic priority order
+    private Random sporadicRandom;
+    private String policyWarning; // why the admitted set is not schedulable under the current policy, or null
+    private boolean warningStale;
+    private boolean rmVerified = true;    // every admitted task is known to pass RM response-time analysis
+    private boolean rmCandidatePassed;    // the last admission test was an RM test that passed
+    
+    // Incrementally maintained schedulability figures
+    private double utilisation;
+    private double density;
+    private double hyperbolicProduct = 1;
+    private int constrainedTasks; // tasks with deadline < period
+    
+    // Run statistics
+    private long jobsReleased;
+    private long jobsCompleted;
+    private long deadlineMisses;
+    private long totalStartLatency;
+    private long startedJobs;
+    
+    public RealTimeScheduler() {
+        releaseHeap = new PriorityQueue<>(BY_RELEASE);
+        readyHeap = new PriorityQueue<>(BY_DEADLINE);
+        tasks = new HashMap<>();
+        byRmPriority = new TreeSet<>(BY_RM_PRIORITY);
+        sporadicRandom = new Random();
+    }
+    
+    // Returns null when the task set stays schedulable under 'policy' with the new task, otherwise the reason it would not
+    public String admissionTest(RealTimePolicy policy, int wcet, int period, int deadline) {
+        rmCandidatePassed = false;
+        if (wcet <= 0 || period <= 0 || deadline <= 0) {
+            return "WCET, period and deadline must be positive";
+        }
+        if (wcet > Math.min(period, deadline)) {
+            return "WCET " + wcet + " exceeds min(period, deadline)";
+        }
+        double u = (double) wcet / period;
+        if (utilisation + u > 1 + 1e-9) {
+            return String.format("%s utilisation %.3f would exceed 1", policy, utilisation + u);
+        }
+        if (policy == RealTimePolicy.EDF) {
+            // U <= 1 is exact for implicit deadlines; density <= 1 is sufficient for constrained ones
+            double d = (double) wcet / Math.min(period, deadline);
+            if (density + d > 1 + 1e-9) {
+                return String.format("EDF density %.3f would exceed 1 (constrained deadlines)", density + d);
+            }
+            return null;
+        }
+        // RM: hyperbolic bound (tighter than Liu & Layland) when all deadlines are implicit,
+        // otherwise exact response-time analysis for the new task and everything below it
+        if (deadline >= period && constrainedTasks == 0 && hyperbolicProduct * (u + 1) <= 2 + 1e-9) {
+            rmCandidatePassed = true;
+            return null;
+        }
+        if (!rmVerified) { // some tasks were admitted under EDF only
+            int failures = countRmFailures();
+            if (failures > 0) return failures + " admitted tasks already fail RM response-time analysis";
+            rmVerified = true;
+        }
+        long d = Math.min(period, deadline);
+        // Equal periods rank by process id and the new task gets the highest id so far, so it sits
+        // below every task with period <= its own and above the rest
+        RealTimeTask boundary = probe(period + 1);
+        SortedSet<RealTimeTask> higher = byRmPriority.headSet(boundary);
+        long demand = wcet;
+        for (RealTimeTask hp : higher) {
+            if (demand > d) break;
+            demand += ceilDiv(d, hp.pcb.getPeriod()) * hp.pcb.getBurstTime();
+        }
+        if (demand > d && responseTime(wcet, d, higher, 0, 0) < 0) {
+            return String.format("RM response-time analysis fails for the new task (C=%d, T=%d, D=%d)", wcet, period, deadline);
+        }
+        for (RealTimeTask t : byRmPriority.tailSet(boundary)) {
+            long td = t.effectiveDeadline();
+            // The cached demand at the deadline is a sufficient test; only when it fails is the full analysis needed
+            if (t.rmDemand + ceilDiv(td, period) * wcet <= td) continue;
+            if (responseTime(t.pcb.getBurstTime(), td, byRmPriority.headSet(t), wcet, period) < 0) {
+                return String.format("RM response-time analysis fails for P%d (C=%d, T=%d, D=%d)", t.pcb.getProcessId(),
+                        t.pcb.getBurstTime(), t.pcb.getPeriod(), t.pcb.getRelativeDeadline());
+            }
+        }
+        rmCandidatePassed = true;
+        return null;
+    }
+    
+    // A key ranking above every task with period >= 'period'
+    private static RealTimeTask probe(int period) {
+        PCB key = new PCB(Integer.MIN_VALUE, ProcessState.NEW, "probe", 0, 0, 0, 0, 0, Collections.emptyList());
+        key.setTiming(period, period, false);
+        return new RealTimeTask(key);
+    }
+    
+    private static long ceilDiv(long a, long b) {
+        return (a + b - 1) / b;
+    }
+    
+    // Worst-case response time of a task with WCET c under fixed priorities, given the tasks above it
+    // (plus an optional extra one with WCET extraC and period extraT), or -1 once it passes deadline d
+    static long responseTime(long c, long d, Collection<RealTimeTask> higher, long extraC, long extraT) {
+        long r = c;
+        while (true) {
+            long next = c + (extraT > 0 ? ceilDiv(r, extraT) * extraC : 0);
+            for (RealTimeTask hp : higher) {
+                if (next > d) break;
+                next += ceilDiv(r, hp.pcb.getPeriod()) * hp.pcb.getBurstTime();
+            }
+            if (next > d) return -1;
+            if (next == r) return r;
+            r = next;
+        }
+    }
+    
+    public void admit(PCB pcb, long now) {
+        RealTimeTask task = new RealTimeTask(pcb);
+        task.nextRelease = now;
+        tasks.put(pcb.getProcessId(), task);
+        addRmDemand(task);
+        warningStale = true;
+        rmVerified &= rmCandidatePassed;
+        rmCandidatePassed = false;
+        utilisation += (double) pcb.getBurstTime() / pcb.getPeriod();
+        density += (double) pcb.getBurstTime() / Math.min(pcb.getPeriod(), pcb.getRelativeDeadline());
+        hyperbolicProduct *= (double) pcb.getBurstTime() / pcb.getPeriod() + 1;
+        if (pcb.getRelativeDeadline() < pcb.getPeriod()) constrainedTasks++;
+        releaseHeap.add(task);
+    }
+    
+    // Stop releasing jobs (suspend/block); the task keeps its admission
+    public void pause(PCB pcb) {
+        RealTimeTask task = tasks.get(pcb.getProcessId());
+        if (task == null) return;
+        releaseHeap.remove(task);
+        task.pending = false;
+        task.running = false;
+        task.seq++; // invalidates any ready-heap entry
+    }
+    
+    // Start releasing jobs again from now
+    public void resume(PCB pcb, long now) {
+        RealTimeTask task = tasks.get(pcb.getProcessId());
+        if (task == null || releaseHeap.contains(task)) return;
+        task.nextRelease = now;
+        releaseHeap.add(task);
+    }
+    
+    public void remove(PCB pcb) {
+        pause(pcb);
+        RealTimeTask task = tasks.remove(pcb.getProcessId());
+        if (task != null) {
+            removeRmDemand(task);
+            warningStale = true;
+            utilisation -= (double) pcb.getBurstTime() / pcb.getPeriod();
+            density -= (double) pcb.getBurstTime() / Math.min(pcb.getPeriod(), pcb.getRelativeDeadline());
+            hyperbolicProduct /= (double) pcb.getBurstTime() / pcb.getPeriod() + 1;
+            if (pcb.getRelativeDeadline() < pcb.getPeriod()) constrainedTasks--;
+        }
+    }
+    
+    // Keep every task's demand at its deadline current: O(n) per admission instead of re-running the analysis
+    private void addRmDemand(RealTimeTask task) {
+        long c = task.pcb.getBurstTime();
+        long t = task.pcb.getPeriod();
+        task.rmDemand = c;
+        for (RealTimeTask hp : byRmPriority.headSet(task)) {
+            task.rmDemand += ceilDiv(task.effectiveDeadline(), hp.pcb.getPeriod()) * hp.pcb.getBurstTime();
+        }
+        for (RealTimeTask lp : byRmPriority.tailSet(task, false)) {
+            lp.rmDemand += ceilDiv(lp.effectiveDeadline(), t) * c;
+        }
+        byRmPriority.add(task);
+    }
+    
+    private void removeRmDemand(RealTimeTask task) {
+        byRmPriority.remove(task);
+        for (RealTimeTask lp : byRmPriority.tailSet(task, false)) {
+            lp.rmDemand -= ceilDiv(lp.effectiveDeadline(), task.pcb.getPeriod()) * task.pcb.getBurstTime();
+        }
+    }
+    
+    // Re-run admission for the whole set under 'policy'; null when every task stays schedulable
+    public String schedulabilityProblem(RealTimePolicy policy) {
+        if (policy == RealTimePolicy.EDF) {
+            return density > 1 + 1e-9 ? String.format("EDF density %.3f exceeds 1", density) : null;
+        }
+        if (constrainedTasks == 0 && hyperbolicProduct <= 2 + 1e-9) return null;
+        int failures = countRmFailures();
+        return failures == 0 ? null : failures + " tasks fail RM response-time analysis";
+    }
+    
+    // Tasks of the admitted set that miss their deadline under RM (exact response-time analysis)
+    public int countRmFailures() {
+        int failures = 0;
+        for (RealTimeTask t : byRmPriority) {
+            if (t.rmDemand <= t.effectiveDeadline()) continue;
+            if (responseTime(t.pcb.getBurstTime(), t.effectiveDeadline(), byRmPriority.headSet(t), 0, 0) < 0) failures++;
+        }
+        return failures;
+    }
+    
+    public void setPolicy(RealTimePolicy policy) {
+        if (this.policy == policy) return;
+        this.policy = policy;
+        warningStale = true;
+        PriorityQueue<RealTimeJob> rebuilt = new PriorityQueue<>(Math.max(1, readyHeap.size()),
+                policy == RealTimePolicy.EDF ? BY_DEADLINE : BY_PERIOD);
+        for (RealTimeJob job : readyHeap) {
+            if (!job.isStale()) rebuilt.add(job);
+        }
+        readyHeap = rebuilt;
+    }
+    
+    // Release every job due by now. A job still unfinished at its task's next release has overrun:
+    // it counts as a miss and is replaced by the new job (firm deadlines).
+    public void releaseJobs(long now, List<PCB> released) {
+        while (!releaseHeap.isEmpty() && releaseHeap.peek().nextRelease <= now) {
+            RealTimeTask task = releaseHeap.poll();
+            PCB pcb = task.pcb;
+            if (task.pending) {
+                deadlineMisses++;
+                task.misses++;
+            }
+            task.release = task.nextRelease;
+            task.deadline = task.release + pcb.getRelativeDeadline();
+            task.seq++;
+            task.pending = true;
+            task.started = false;
+            task.jobs++;
+            pcb.setRemainingTime(pcb.getBurstTime());
+            jobsReleased++;
+            
+            long gap = pcb.getPeriod();
+            if (pcb.isSporadic()) gap += sporadicRandom.nextInt(pcb.getPeriod() / 2 + 1); // minimum inter-arrival plus slack
+            task.nextRelease = task.release + gap;
+            releaseHeap.add(task);
+            if (task.running) {
+                recordStart(task, task.release); // the CPU moves straight on to the new job
+            } else {
+                readyHeap.add(new RealTimeJob(task));
+            }
+            released.add(pcb);
+        }
+    }
+    
+    // Highest-priority ready job, skipping entries left behind by overruns and pauses
+    public PCB peekReady() {
+        while (!readyHeap.isEmpty() && readyHeap.peek().isStale()) readyHeap.poll();
+        return readyHeap.isEmpty() ? null : readyHeap.peek().task.pcb;
+    }
+    
+    public PCB dispatchReady(long now) {
+        PCB pcb = peekReady();
+        if (pcb == null) return null;
+        RealTimeTask task = readyHeap.poll().task;
+        task.running = true;
+        if (!task.started) recordStart(task, now);
+        return pcb;
+    }
+    
+    // The current job of 'task' first gets the CPU at 'now'
+    private void recordStart(RealTimeTask task, long now) {
+        task.started = true;
+        long latency = now - task.release;
+        task.minStartLatency = Math.min(task.minStartLatency, latency);
+        task.maxStartLatency = Math.max(task.maxStartLatency, latency);
+        totalStartLatency += latency;
+        startedJobs++;
+    }
+    
+    public void preempt(PCB pcb) {
+        RealTimeTask task = tasks.get(pcb.getProcessId());
+        task.running = false;
+        readyHeap.add(new RealTimeJob(task));
+    }
+    
+    // Does the ready job 'a' outrank the running task 'b'?
+    public boolean higherPriority(PCB a, PCB b) {
+        RealTimeTask ta = tasks.get(a.getProcessId());
+        RealTimeTask tb = tasks.get(b.getProcessId());
+        if (policy == RealTimePolicy.EDF) {
+            return ta.deadline < tb.deadline || (ta.deadline == tb.deadline && a.getProcessId() < b.getProcessId());
+        }
+        return a.getPeriod() < b.getPeriod() || (a.getPeriod() == b.getPeriod() && a.getProcessId() < b.getProcessId());
+    }
+    
+    // The job finished at time 'finish'; the task waits for its next release
+    public void completeJob(PCB pcb, long finish) {
+        RealTimeTask task = tasks.get(pcb.getProcessId());
+        task.running = false;
+        task.pending = false;
+        jobsCompleted++;
+        task.maxResponse = Math.max(task.maxResponse, finish - task.release);
+        if (finish > task.deadline) {
+            deadlineMisses++;
+            task.misses++;
+        }
+    }
+    
+    public boolean isRealTime(PCB pcb) { return tasks.containsKey(pcb.getProcessId()); }
+    public Collection<RealTimeTask> getTasks() { return tasks.values(); }
+    public RealTimePolicy getPolicy() { return policy; }
+    // Tasks admitted under one policy are re-checked when the scheduler runs them under another
+    public String getPolicyWarning() {
+        if (warningStale) {
+            policyWarning = schedulabilityProblem(policy);
+            warningStale = false;
+        }
+        return policyWarning;
+    }
+    public double getUtilisation() { return utilisation; }
+    public double getDensity() { return density; }
+    public double getHyperbolicProduct() { return hyperbolicProduct; }
+    public double getLiuLaylandBound() { int n = tasks.size(); return n == 0 ? 1 : n * (Math.pow(2, 1.0 / n) - 1); }
+    public long getJobsReleased() { return jobsReleased; }
+    public long getJobsCompleted() { return jobsCompleted; }
+    public long getDeadlineMisses() { return deadlineMisses; }
+    public double getAverageStartLatency() { return startedJobs == 0 ? 0 : (double) totalStartLatency / startedJobs; }
+    
+    public long getMaxStartJitter() {
+        long max = 0;
+        for (RealTimeTask t : tasks.values()) max = Math.max(max, t.getStartJitter());
+        return max;
+    }
+}
+
+// Fair-Share Entity - a process or a group competing for its parent group's CPU by virtual runtime
+class FairShareEntity {
+    static final int DEFAULT_WEIGHT = 1024;
+    
+    long id;
+    PCB pcb;                // null for groups
+    FairShareGroup parent;
+    int weight = DEFAULT_WEIGHT;
+    double vruntime;        // CPU ticks scaled by DEFAULT_WEIGHT / weight
+    boolean queued;         // present in the parent's run queue
+    
+    FairShareEntity(long id, PCB pcb, FairShareGroup parent) {
+        this.id = id;
+        this.pcb = pcb;
+        this.parent = parent;
+    }
+}
+
+// Fair-Share Group - one node of the owner hierarchy with a weight and an optional quota per period
+class FairShareGroup extends FairShareEntity {
+    String path;
+    TreeSet<FairShareEntity> runQueue = new TreeSet<>(FairShareScheduler.BY_VRUNTIME);
+    List<FairShareGroup> children = new ArrayList<>();
+    double minVruntime;     // monotonic floor for entities joining the run queue
+    int quota = -1;         // ticks per period, -1 for unlimited
+    int period = 100;
+    long periodStart;
+    int usedInPeriod;
+    boolean throttled;
+    long unthrottleAt;
+    long ticks;             // CPU ticks consumed by the whole subtree
+    long throttles;
+    int processes;          // live processes attached directly to this group
+    double cap;             // most of the CPU the subtree's quotas allow it
+    double target;          // share of the CPU the weights and quotas entitle the group to
+    
+    FairShareGroup(long id, String path, FairShareGroup parent) {
+        super(id, null, parent);
+        this.path = path;
+    }
+}
+
+// Fair-Share Scheduler - owners form a group hierarchy ("tenant/team/user"); each level picks the
+// runnable child with the least weighted virtual runtime, so a pick costs O(depth * log n)
+class FairShareScheduler {
+    static final Comparator<FairShareEntity> BY_VRUNTIME =
+            Comparator.<FairShareEntity>comparingDouble(e -> e.vruntime).thenComparingLong(e -> e.id);
+    
+    private FairShareGroup root;
+    private Map<String, FairShareGroup> groups;      // by path
+    private Map<Integer, FairShareEntity> entities;  // live processes by id
+    private PriorityQueue<FairShareGroup> throttledHeap;
+    private long nextId;
+    private int slice = 4; // ticks a process may run before the picks are revisited
+    
+    public FairShareScheduler() {
+        root = new FairShareGroup(nextId++, "/", null);
+        groups = new HashMap<>();
+        groups.put("", root);
+        entities = new HashMap<>();
+        throttledHeap = new PriorityQueue<>(Comparator.<FairShareGroup>comparingLong(g -> g.unthrottleAt).thenComparingLong(g -> g.id));
+    }
+    
+    // Group for an owner path, creating it and any missing ancestors
+    public FairShareGroup getGroup(String owner) {
+        String path = owner == null ? "" : owner.trim();
+        while (path.startsWith("/")) path = path.substring(1);
+        while (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+        FairShareGroup group = groups.get(path);
+        if (group != null) return group;
+        int slash = path.lastIndexOf('/');
+        FairShareGroup parent = getGroup(slash < 0 ? "" : path.substring(0, slash));
+        group = new FairShareGroup(nextId++, path, parent);
+        parent.children.add(group);
+        groups.put(path, group);
+        return group;
+    }
+    
+    public String configure(String owner, int weight, int quota, int period) {
+        if (weight <= 0 || period <= 0 || quota == 0 || quota < -1) {
+            return "Weight and period must be positive; quota is a positive tick count or -1 for unlimited";
+        }
+        FairShareGroup group = getGroup(owner);
+        group.weight = weight;
+        group.quota = quota;
+        group.period = period;
+        if (quota < 0 && group.throttled) {
+            throttledHeap.remove(group);
+            group.throttled = false;
+            updateEligibility(group);
+        }
+        return String.format("Group %s: weight %d, quota %s per %d ticks", group.path.isEmpty() ? "/" : group.path,
+                weight, quota < 0 ? "unlimited" : quota + " ticks", period);
+    }
+    
+    // Start accounting for a process without queueing it, e.g. one restored as RUNNING
+    public FairShareEntity track(PCB pcb) {
+        FairShareEntity e = entities.get(pcb.getProcessId());
+        if (e == null) {
+            e = new FairShareEntity(nextId++, pcb, getGroup(pcb.getOwner()));
+            e.parent.processes++;
+            entities.put(pcb.getProcessId(), e);
+        }
+        return e;
+    }
+    
+    // Process became READY
+    public void enqueue(PCB pcb) {
+        FairShareEntity e = track(pcb);
+        if (e.queued) return;
+        FairShareGroup group = e.parent;
+        e.vruntime = Math.max(e.vruntime, group.minVruntime); // no banked credit from time spent asleep
+        group.runQueue.add(e);
+        e.queued = true;
+        updateEligibility(group);
+    }
+    
+    // Process left READY (dispatched, blocked, suspended)
+    public void dequeue(PCB pcb) {
+        FairShareEntity e = entities.get(pcb.getProcessId());
+        if (e == null || !e.queued) return;
+        e.parent.runQueue.remove(e);
+        e.queued = false;
+        updateEligibility(e.parent);
+    }
+    
+    // Process terminated or destroyed
+    public void forget(PCB pcb) {
+        dequeue(pcb);
+        FairShareEntity e = entities.remove(pcb.getProcessId());
+        if (e != null) e.parent.processes--;
+    }
+    
+    // A group sits in its parent's run queue while it has runnable work and quota left
+    private void updateEligibility(FairShareGroup group) {
+        while (group.parent != null) {
+            boolean eligible = !group.throttled && !group.runQueue.isEmpty();
+            if (eligible == group.queued) return;
+            if (eligible) {
+                group.vruntime = Math.max(group.vruntime, group.parent.minVruntime);
+                group.parent.runQueue.add(group);
+            } else {
+                group.parent.runQueue.remove(group);
+            }
+            group.queued = eligible;
+            group = group.parent;
+        }
+    }
+    
+    // Descend from the root, taking the least-served child at every level
+    public PCB pick() {
+        if (root.throttled) return null;
+        FairShareGroup group = root;
+        while (!group.runQueue.isEmpty()) {
+            FairShareEntity e = group.runQueue.first();
+            group.minVruntime = Math.max(group.minVruntime, e.vruntime);
+            if (e.pcb != null) return e.pcb;
+            group = (FairShareGroup) e;
+        }
+        return null;
+    }
+    
+    public boolean hasRunnable() {
+        return !root.throttled && !root.runQueue.isEmpty();
+    }
+    
+    // Account one tick of CPU to the process and its ancestors; true if any of them is now out of quota
+    public boolean charge(PCB pcb, long now) {
+        FairShareEntity e = entities.get(pcb.getProcessId());
+        if (e == null) return false;
+        e.vruntime += (double) FairShareEntity.DEFAULT_WEIGHT / e.weight; // not queued while it runs
+        boolean throttled = false;
+        for (FairShareGroup g = e.parent; g != null; g = g.parent) {
+            g.ticks++;
+            if (g.queued) {
+                g.parent.runQueue.remove(g);
+                g.vruntime += (double) FairShareEntity.DEFAULT_WEIGHT / g.weight;
+                g.parent.runQueue.add(g);
+            } else {
+                g.vruntime += (double) FairShareEntity.DEFAULT_WEIGHT / g.weight;
+            }
+            if (g.quota > 0) {
+                if (now >= g.periodStart + g.period) {
+                    g.periodStart = now - now % g.period;
+                    g.usedInPeriod = 0;
+                }
+                if (++g.usedInPeriod >= g.quota && !g.throttled) {
+                    g.throttled = true;
+                    g.throttles++;
+                    g.unthrottleAt = g.periodStart + g.period;
+                    throttledHeap.add(g);
+                    updateEligibility(g);
+                }
+            }
+            throttled |= g.throttled;
+        }
+        return throttled;
+    }
+    
+    // Give throttled groups their quota back once their period has rolled over
+    public void refill(long now) {
+        while (!throttledHeap.isEmpty() && throttledHeap.peek().unthrottleAt <= now) {
+            FairShareGroup g = throttledHeap.poll();
+            g.throttled = false;
+            g.usedInPeriod = 0;
+            g.periodStart = now - now % g.period;
+            updateEligibility(g);
+        }
+    }
+    
+    // Drop all run-queue and usage state, keeping the configured hierarchy
+    public void reset() {
+        for (FairShareGroup g : groups.values()) {
+            g.runQueue.clear();
+            g.queued = false;
+            g.throttled = false;
+            g.vruntime = 0;
+            g.minVruntime = 0;
+            g.periodStart = 0;
+            g.usedInPeriod = 0;
+            g.ticks = 0;
+            g.throttles = 0;
+            g.processes = 0;
+        }
+        entities.clear();
+        throttledHeap.clear();
+    }
+    
+    // Target share: the parent's share split by weight among child groups that have asked for CPU,
+    // with any child held below its weighted share by quotas handing the excess to its siblings
+    public void updateTargets() {
+        List<FairShareGroup> order = new ArrayList<>(groups.size());
+        order.add(root);
+        for (int i = 0; i < order.size(); i++) order.addAll(order.get(i).children);
+        for (int i = order.size() - 1; i >= 0; i--) {
+            FairShareGroup g = order.get(i);
+            double cap = g.quota > 0 ? Math.min(1, (double) g.quota / g.period) : 1;
+            if (g.processes == 0 && !g.children.isEmpty()) {
+                double childCaps = 0;
+                for (FairShareGroup c : g.children) childCaps += c.cap;
+                cap = Math.min(cap, childCaps);
+            }
+            g.cap = cap;
+        }
+        root.target = root.cap;
+        List<FairShareGroup> active = new ArrayList<>();
+        for (FairShareGroup g : order) {
+            active.clear();
+            long weight = 0;
+            for (FairShareGroup c : g.children) {
+                c.target = 0;
+                if (c.ticks > 0 || c.queued) {
+                    active.add(c);
+                    weight += c.weight;
+                }
+            }
+            // Water-filling: settle the most constrained children first
+            active.sort(Comparator.comparingDouble(c -> c.cap / c.weight));
+            double remaining = g.target;
+            for (FairShareGroup c : active) {
+                c.target = Math.min(c.cap, remaining * c.weight / weight);
+                remaining -= c.target;
+                weight -= c.weight;
+            }
+        }
+    }
+    
+    public FairShareGroup getRoot() { return root; }
+    public Collection<FairShareGroup> getGroups() { return groups.values(); }
+    public int getSlice() { return slice; }
+    public void setSlice(int slice) { this.slice = slice; }
+}
+
+// Context Switch Model - what a dispatch costs: a fixed switch overhead plus a cache/TLB warm-up
+// penalty that grows with the time since the process last ran, paid in full when it lands on a
+// different CPU than last time. Costs are fractions of a tick and are paid out of the running
+// process's ticks, so frequent switching visibly lowers throughput
+class ContextSwitchModel {
+    private double switchCost = 0.05;  // ticks per switch (register save/restore, scheduler)
+    private double warmupCost = 0.25;  // ticks to refill a completely cold cache and TLB
+    private double cacheDecay = 20;    // ticks for a process's cache footprint to decay by 1/e
+    private int cpus = 4;
+    private boolean affinity;          // keep processes on their last CPU; cache warmth only breaks ties
+    private int nextCpu;
+    private int currentCpu = -1;
+    private Map<Integer, long[]> history; // pid -> {last CPU, tick it last ran}
+    
+    private long switches;
+    private long migrations;
+    private double switchTicks;
+    private double warmupTicks;
+    private long lostTicks;
+    private long busyTicks;
+    
+    public ContextSwitchModel() {
+        history = new HashMap<>();
+    }
+    
+    public void configure(double switchCost, double warmupCost, double cacheDecay, int cpus, boolean affinity) {
+        this.switchCost = switchCost;
+        this.warmupCost = warmupCost;
+        this.cacheDecay = cacheDecay;
+        this.cpus = cpus;
+        this.affinity = affinity;
+        history.clear();
+        currentCpu = -1;
+    }
+    
+    // CPU a process would be dispatched on: its last one under affinity, otherwise the next in turn
+    private int cpuFor(int pid) {
+        long[] h = history.get(pid);
+        if (affinity && h != null && h[0] < cpus) return (int) h[0];
+        return nextCpu % cpus;
+    }
+    
+    // Warm-up penalty for running 'pcb' on 'cpu' at 'now'
+    private double warmup(long[] h, int cpu, long now) {
+        if (h == null || h[0] != cpu) return warmupCost;
+        return warmupCost * (1 - Math.exp(-(now - h[1]) / cacheDecay));
+    }
+    
+    public double expectedCost(PCB pcb, long now) {
+        int cpu = cpuFor(pcb.getProcessId());
+        return switchCost + warmup(history.get(pcb.getProcessId()), cpu, now);
+    }
+    
+    // Charge a switch to 'pcb'; returns its cost in ticks
+    public double dispatch(PCB pcb, long now) {
+        int pid = pcb.getProcessId();
+        long[] h = history.get(pid);
+        int cpu = cpuFor(pid);
+        if (!affinity || h == null) nextCpu = (nextCpu + 1) % cpus;
+        double warm = warmup(h, cpu, now);
+        if (h != null && h[0] != cpu) migrations++;
+        currentCpu = cpu;
+        switches++;
+        switchTicks += switchCost;
+        warmupTicks += warm;
+        return switchCost + warm;
+    }
+    
+    // The process held the CPU for the tick ending at 'now'; 'lost' if the tick went on switching
+    public void ran(PCB pcb, long now, boolean lost) {
+        long[] h = history.get(pcb.getProcessId());
+        if (h == null) history.put(pcb.getProcessId(), new long[] {currentCpu, now});
+        else {
+            h[0] = currentCpu;
+            h[1] = now;
+        }
+        busyTicks++;
+        if (lost) lostTicks++;
+    }
+    
+    public void forget(PCB pcb) {
+        history.remove(pcb.getProcessId());
+    }
+    
+    public void reset() {
+        history.clear();
+        currentCpu = -1;
+        nextCpu = 0;
+        switches = 0;
+        migrations = 0;
+        switchTicks = 0;
+        warmupTicks = 0;
+        lostTicks = 0;
+        busyTicks = 0;
+    }
+    
+    // Share of busy CPU time spent switching rather than running processes
+    public double getLostFraction() { return busyTicks == 0 ? 0 : (double) lostTicks / busyTicks; }
+    public double getSwitchCost() { return switchCost; }
+    public double getWarmupCost() { return warmupCost; }
+    public double getCacheDecay() { return cacheDecay; }
+    public int getCpus() { return cpus; }
+    public boolean isAffinity() { return affinity; }
+    public long getSwitches() { return switches; }
+    public long getMigrations() { return migrations; }
+    public double getSwitchTicks() { return switchTicks; }
+    public double getWarmupTicks() { return warmupTicks; }
+    public long getLostTicks() { return lostTicks; }
+    public long getBusyTicks() { return busyTicks; }
+}
+
+// Swap Device - page-sized slots in a local file, with synchronous and asynchronous transfers
+class SwapDevice {
+    private AsynchronousFileChannel channel;
+    private Path file;
+    private int slotSize;
+    private int nextSlot;
+    private Deque<Integer> freeSlots;
+    private ByteBuffer syncBuffer;
+    private Map<Integer, Future<Integer>> pendingReads; // slot -> read-ahead still in flight
+    private long bytesWritten;
+    private long bytesRead;
+    private long pagesOut;
+    private long pagesIn;
+    
+    public SwapDevice(int slotSize) {
+        this.slotSize = slotSize;
+        this.freeSlots = new ArrayDeque<>();
+        this.pendingReads = new HashMap<>();
+        this.syncBuffer = ByteBuffer.allocateDirect(slotSize);
+    }
+    
+    // The backing file is only created once the first page is swapped out
+    private AsynchronousFileChannel channel() {
+        if (channel == null) {
+            try {
+                file = Files.createTempFile("ossim-swap", ".bin");
+                file.toFile().deleteOnExit();
+                channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open swap file", e);
+            }
+        }
+        return channel;
+    }
+    
+    public int allocateSlot() {
+        Integer slot = freeSlots.pollFirst();
+        return slot != null ? slot : nextSlot++;
+    }
+    
+    public void freeSlot(int slot) {
+        Future<Integer> pending = pendingReads.remove(slot);
+        if (pending != null) await(pending);
+        freeSlots.addFirst(slot);
+    }
+    
+    // Mark exactly these slots as in use when restoring a snapshot
+    public void restoreSlots(int[] usedSlots) {
+        BitSet used = new BitSet();
+        for (int slot : usedSlots) used.set(slot);
+        nextSlot = used.length();
+        freeSlots.clear();
+        for (int slot = used.nextClearBit(0); slot < nextSlot; slot = used.nextClearBit(slot + 1)) {
+            freeSlots.addLast(slot);
+        }
+    }
+    
+    public void writePage(int slot, int pageNum) {
+        syncBuffer.clear();
+        syncBuffer.putInt(0, pageNum); // stamp the page so reads can be checked
+        await(channel().write(syncBuffer, (long) slot * slotSize));
+        bytesWritten += slotSize;
+        pagesOut++;
+    }
+    
+    public void readPage(int slot) {
+        Future<Integer> pending = pendingReads.remove(slot);
+        if (pending != null) {
+            await(pending); // read-ahead already fetched it
+            return;
+        }
+        syncBuffer.clear();
+        await(channel().read(syncBuffer, (long) slot * slotSize));
+        bytesRead += slotSize;
+        pagesIn++;
+    }
+    
+    // Start a read without waiting for it; the slot stays busy until the read completes
+    public void readPageAsync(int slot) {
+        if (pendingReads.containsKey(slot)) return;
+        pendingReads.put(slot, channel().read(ByteBuffer.allocate(slotSize), (long) slot * slotSize));
+        bytesRead += slotSize;
+        pagesIn++;
+    }
+    
+    // Slots whose read-ahead has finished can be handed out again
+    public void reapCompletedReads(Collection<Integer> completedSlots) {
+        Iterator<Map.Entry<Integer, Future<Integer>>> it = pendingReads.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Future<Integer>> e = it.next();
+            if (e.getValue().isDone()) {
+                completedSlots.add(e.getKey());
+                it.remove();
+            }
+        }
+    }
+    
+    private static void await(Future<Integer> io) {
+        try {
+            io.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException("Swap I/O failed", new IOException(e.getCause()));
+        }
+    }
+    
+    // Release the backing file; the device is being replaced and its contents are no longer needed
+    public void close() {
+        pendingReads.clear();
+        if (channel == null) return;
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // a temp file left behind is removed on exit
+        }
+        channel = null;
+    }
+    
+    public int getSlotSize() { return slotSize; }
+    public int getSlotsInUse() { return nextSlot - freeSlots.size(); }
+    public long getBytesWritten() { return bytesWritten; }
+    public long getBytesRead() { return bytesRead; }
+    public long getPagesOut() { return pagesOut; }
+    public long getPagesIn() { return pagesIn; }
+    public int getPendingReads() { return pendingReads.size(); }
+}
+
+// Working Set Manager - per-process resident sets, working sets over the last Δ references, and fault rates
+class WorkingSetManager {
+    public static final int MIN_FRAMES = 2;
+    public static final double PFF_HIGH = 0.2;  // fault rate above which a short system is thrashing
+    public static final double PFF_LOW = 0.05;  // fault rate below which suspended work may come back
+    private static final double PFF_ALPHA = 0.01; // smoothing of the fault-rate moving averages
+    
+    private int window;
+    private Map<Integer, ProcessMemory> processes;
+    private Map<Integer, Integer> holders; // page -> resident sets holding it (more than one for shared pages)
+    private long demand; // sum of working-set sizes of active processes
+    private double systemFaultRate;
+    private long references;
+    private long faults;
+    
+    public WorkingSetManager(int window) {
+        this.window = window;
+        this.processes = new HashMap<>();
+        this.holders = new HashMap<>();
+    }
+    
+    private void hold(int pageNum) {
+        holders.merge(pageNum, 1, Integer::sum);
+    }
+    
+    private void drop(int pageNum) {
+        holders.computeIfPresent(pageNum, (k, n) -> n > 1 ? n - 1 : null);
+    }
+    
+    // Whether any process still counts the page among its resident frames
+    public boolean isHeld(int pageNum) {
+        return holders.containsKey(pageNum);
+    }
+    
+    private ProcessMemory of(int pid) {
+        ProcessMemory pm = processes.get(pid);
+        if (pm == null) {
+            pm = new ProcessMemory(window);
+            processes.put(pid, pm);
+        }
+        return pm;
+    }
+    
+    // Record one reference; pages the process must give up under its local allocation go into evictions
+    public void reference(int pid, int pageNum, boolean fault, List<Integer> evictions) {
+        ProcessMemory pm = of(pid);
+        int before = pm.getWorkingSetSize();
+        if (!pm.resident.contains(pageNum)) hold(pageNum);
+        pm.reference(pageNum, fault, PFF_ALPHA);
+        if (pm.active) demand += pm.getWorkingSetSize() - before;
+        
+        references++;
+        if (fault) faults++;
+        systemFaultRate += PFF_ALPHA * ((fault ? 1 : 0) - systemFaultRate);
+        
+        int allocation = Math.max(MIN_FRAMES, pm.getWorkingSetSize());
+        while (pm.resident.size() > allocation) {
+            Iterator<Integer> lru = pm.resident.iterator();
+            int victim = lru.next();
+            lru.remove();
+            drop(victim);
+            evictions.add(victim);
+        }
+    }
+    
+    public void addResident(int pid, int pageNum) {
+        if (of(pid).resident.add(pageNum)) hold(pageNum);
+    }
+    
+    public void removeResident(int pid, int pageNum) {
+        if (of(pid).resident.remove(pageNum)) drop(pageNum);
+    }
+    
+    public void replaceResident(int pid, int oldPage, int newPage) {
+        removeResident(pid, oldPage);
+        addResident(pid, newPage);
+    }
+    
+    // Pages the process holds resident, least recently used first; clears them from its resident set
+    public List<Integer> releaseResident(int pid) {
+        ProcessMemory pm = of(pid);
+        List<Integer> released = new ArrayList<>(pm.resident);
+        pm.resident.clear();
+        for (int pageNum : released) drop(pageNum);
+        return released;
+    }
+    
+    public void setActive(int pid, boolean active) {
+        ProcessMemory pm = of(pid);
+        if (pm.active == active) return;
+        pm.active = active;
+        demand += active ? pm.getWorkingSetSize() : -pm.getWorkingSetSize();
+    }
+    
+    public void remove(int pid) {
+        ProcessMemory pm = processes.remove(pid);
+        if (pm == null) return;
+        if (pm.active) demand -= pm.getWorkingSetSize();
+        for (int pageNum : pm.resident) drop(pageNum);
+    }
+    
+    // Working sets no longer fit in memory and the system is faulting heavily
+    public boolean isThrashing(int frames) {
+        return demand > frames && systemFaultRate > PFF_HIGH;
+    }
+    
+    // Room to bring the process's working set back, with 10% headroom to avoid oscillating
+    public boolean canAdmit(int pid, int frames) {
+        return demand + of(pid).getWorkingSetSize() <= frames * 0.9 && systemFaultRate < PFF_LOW;
+    }
+    
+    // Changing Δ invalidates every window, so tracking restarts from empty windows
+    public void setWindow(int window) {
+        this.window = window;
+        demand = 0;
+        for (ProcessMemory pm : processes.values()) {
+            pm.resetWindow(window);
+        }
+    }
+    
+    public int getWindow() { return window; }
+    public long getDemand() { return demand; }
+    public double getSystemFaultRate() { return systemFaultRate; }
+    public long getReferences() { return references; }
+    public long getFaults() { return faults; }
+    public int getWorkingSetSize(int pid) { return processes.containsKey(pid) ? processes.get(pid).getWorkingSetSize() : 0; }
+    public int getResidentCount(int pid) { return processes.containsKey(pid) ? processes.get(pid).resident.size() : 0; }
+    public double getFaultRate(int pid) { return processes.containsKey(pid) ? processes.get(pid).faultRate : 0; }
+    public long getFaults(int pid) { return processes.containsKey(pid) ? processes.get(pid).faults : 0; }
+}
+
+// Per-process memory state for the working set manager
+class ProcessMemory {
+    private int[] windowRing; // last Δ referenced pages, oldest overwritten first
+    private int windowPos;
+    private int windowFill;
+    private Map<Integer, Integer> windowCounts; // page -> occurrences in the window; its size is the working set
+    LinkedHashSet<Integer> resident; // iteration order is LRU first
+    boolean active = true;
+    double faultRate;
+    long faults;
+    
+    public ProcessMemory(int window) {
+        resident = new LinkedHashSet<>();
+        resetWindow(window);
+    }
+    
+    public void resetWindow(int window) {
+        windowRing = new int[window];
+        windowPos = 0;
+        windowFill = 0;
+        windowCounts = new HashMap<>();
+    }
+    
+    public void reference(int pageNum, boolean fault, double alpha) {
+        if (windowFill == windowRing.length) {
+            int oldest = windowRing[windowPos];
+            if (windowCounts.merge(oldest, -1, Integer::sum) == 0) windowCounts.remove(oldest);
+        } else {
+            windowFill++;
+        }
+        windowRing[windowPos] = pageNum;
+        windowPos = (windowPos + 1) % windowRing.length;
+        windowCounts.merge(pageNum, 1, Integer::sum);
+        
+        resident.remove(pageNum);
+        resident.add(pageNum);
+        if (fault) faults++;
+        faultRate += alpha * ((fault ? 1 : 0) - faultRate);
+    }
+    
+    public int getWorkingSetSize() { return windowCounts.size(); }
+}
+
+// Kernel Snapshot - columnar checkpoint of kernel state with a compact binary encoding
+class KernelSnapshot {
+    private static final int MAGIC = 0x4F53534E; // "OSSN"
+    private static final int VERSION = 7;
+    
+    // Scalars
+    long clock;
+    int nextProcessId;
+    int pageSize;
+    int totalMemory;
+    int runningPid = -1;
+    int nextPageNumber;
+    long cowFaults;
+    long cowBytesCopied;
+    long cowFaultNanos;
+    
+    // Processes, one column per PCB field
+    int[] pids, states, priorities, memoryRequirements, burstTimes, arrivalTimes, remainingTimes, ownerIndexes, parentIds;
+    int[] periods, deadlines, sporadicFlags;
+    String[] owners; // dictionary of distinct owner names
+    int[] pageOffsets; // pages of process i are pages[pageOffsets[i] .. pageOffsets[i + 1])
+    int[] pages;
+    
+    // Queues, stored as process ids in queue order
+    int[] readyPids, blockedPids, suspendedPids, loadSuspendedPids;
+    
+    // Page table
+    int[] pageNumbers, pageOwners, pageAccessCounts, pageRefCounts, pageCopyOnWrite;
+    long[] pageLastAccessed;
+    
+    // Swapped-out pages (swap contents themselves are not captured)
+    int[] swapPageNumbers, swapOwners, swapAccessCounts, swapRefCounts, swapCopyOnWrite, swapSlots;
+    long[] swapLastAccessed;
+    
+    // Fixed partitions, and a compaction in progress: remaining {id, target, size} moves and {progressKb, selective}
+    int[] partitionIds, partitionStarts, partitionSizes, partitionPids;
+    int[] pendingAllocationPids, deferredAllocationPids, compactionPlan, compactionState;
+    
+    public int getProcessCount() { return pids.length; }
+    
+    public byte[] toBytes() {
+        byte[][] ownerBytes = new byte[owners.length][];
+        long size = 4L * 8 + 8 * 4; // header: 8 ints, 4 longs
+        for (int i = 0; i < owners.length; i++) {
+            ownerBytes[i] = owners[i].getBytes(StandardCharsets.UTF_8);
+            size += 4 + ownerBytes[i].length;
+        }
+        int[][] intColumns = intColumns();
+        for (int[] column : intColumns) size += 4 + 4L * column.length;
+        long[][] longColumns = longColumns();
+        for (long[] column : longColumns) size += 4 + 8L * column.length;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Snapshot too large: " + size + " bytes");
+        }
+        
+        ByteBuffer buf = ByteBuffer.allocate((int) size);
+        buf.putInt(MAGIC).putInt(VERSION);
+        buf.putLong(clock).putInt(nextProcessId).putInt(pageSize).putInt(totalMemory).putInt(runningPid);
+        buf.putInt(nextPageNumber).putLong(cowFaults).putLong(cowBytesCopied).putLong(cowFaultNanos);
+        buf.putInt(owners.length);
+        for (byte[] b : ownerBytes) {
+            buf.putInt(b.length).put(b);
+        }
+        for (int[] column : intColumns) {
+            buf.putInt(column.length);
+            buf.asIntBuffer().put(column);
+            buf.position(buf.position() + 4 * column.length);
+        }
+        for (long[] column : longColumns) {
+            buf.putInt(column.length);
+            buf.asLongBuffer().put(column);
+            buf.position(buf.position() + 8 * column.length);
+        }
+        return buf.array();
+    }
+    
+    public static KernelSnapshot fromBytes(byte[] data) {
+        KernelSnapshot s;
+        try {
+            s = decode(ByteBuffer.wrap(data));
+        } catch (BufferUnderflowException | NegativeArraySizeException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or corrupt snapshot");
+        }
+        s.validate();
+        return s;
+    }
+    
+    private static KernelSnapshot decode(ByteBuffer buf) {
+        if (buf.getInt() != MAGIC) throw new IllegalArgumentException("Not a kernel snapshot");
+        int version = buf.getInt();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        
+        KernelSnapshot s = new KernelSnapshot();
+        s.clock = buf.getLong();
+        s.nextProcessId = buf.getInt();
+        s.pageSize = buf.getInt();
+        s.totalMemory = buf.getInt();
+        s.runningPid = buf.getInt();
+        s.nextPageNumber = buf.getInt();
+        s.cowFaults = buf.getLong();
+        s.cowBytesCopied = buf.getLong();
+        s.cowFaultNanos = buf.getLong();
+        s.owners = new String[buf.getInt()];
+        for (int i = 0; i < s.owners.length; i++) {
+            byte[] b = new byte[buf.getInt()];
+            buf.get(b);
+            s.owners[i] = new String(b, StandardCharsets.UTF_8);
+        }
+        int[][] columns = new int[s.intColumns().length][];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = new int[buf.getInt()];
+            buf.asIntBuffer().get(columns[c]);
+            buf.position(buf.position() + 4 * columns[c].length);
+        }
+        s.setIntColumns(columns);
+        s.pageLastAccessed = readLongs(buf);
+        s.swapLastAccessed = readLongs(buf);
+        return s;
+    }
+    
+    // Reject a snapshot the kernel could not restore, before restore touches any kernel state
+    public void validate() {
+        int n = pids.length;
+        check(pageSize > 0 && pageSize <= Kernel.MAX_PAGE_SIZE && totalMemory > 0 && clock >= 0 && nextPageNumber >= 0, "invalid scalar header");
+        for (int[] column : new int[][] {states, priorities, memoryRequirements, burstTimes, arrivalTimes, remainingTimes,
+                ownerIndexes, parentIds, periods, deadlines, sporadicFlags}) {
+            check(column.length == n, "process columns differ in length");
+        }
+        check(pageOffsets.length == n + 1 && pageOffsets[0] == 0 && pageOffsets[n] == pages.length, "invalid page offsets");
+        Set<Integer> known = new HashSet<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            check(known.add(pids[i]), "duplicate process P" + pids[i]);
+            check(states[i] >= 0 && states[i] < ProcessState.values().length, "invalid state of P" + pids[i]);
+            check(ownerIndexes[i] >= 0 && ownerIndexes[i] < owners.length, "invalid owner of P" + pids[i]);
+            check(pageOffsets[i] <= pageOffsets[i + 1], "invalid page offsets");
+            check(periods[i] >= 0 && deadlines[i] >= 0, "invalid timing of P" + pids[i]);
+        }
+        for (int[] queue : new int[][] {readyPids, blockedPids, suspendedPids, loadSuspendedPids}) {
+            for (int pid : queue) check(known.contains(pid), "queue refers to unknown process P" + pid);
+        }
+        check(runningPid == -1 || known.contains(runningPid), "running process P" + runningPid + " is unknown");
+        for (int[] column : new int[][] {pageOwners, pageAccessCounts, pageRefCounts, pageCopyOnWrite}) {
+            check(column.length == pageNumbers.length, "page table columns differ in length");
+        }
+        check(pageLastAccessed.length == pageNumbers.length, "page table columns differ in length");
+        for (int[] column : new int[][] {swapOwners, swapAccessCounts, swapRefCounts, swapCopyOnWrite, swapSlots}) {
+            check(column.length == swapPageNumbers.length, "swap columns differ in length");
+        }
+        check(swapLastAccessed.length == swapPageNumbers.length, "swap columns differ in length");
+        for (int slot : swapSlots) check(slot >= 0, "invalid swap slot " + slot);
+        for (int[] column : new int[][] {partitionStarts, partitionSizes, partitionPids}) {
+            check(column.length == partitionIds.length, "partition columns differ in length");
+        }
+        Set<Integer> partitionIdSet = new HashSet<>();
+        for (int i = 0; i < partitionIds.length; i++) {
+            check(partitionStarts[i] >= 0 && partitionSizes[i] > 0, "invalid partition " + partitionIds[i]);
+            partitionIdSet.add(partitionIds[i]);
+        }
+        for (int[] queue : new int[][] {pendingAllocationPids, deferredAllocationPids}) {
+            for (int pid : queue) check(known.contains(pid), "allocation queue refers to unknown process P" + pid);
+        }
+        check(compactionPlan.length % 3 == 0 && (compactionState.length == 0 ? compactionPlan.length == 0 : compactionState.length == 2),
+                "invalid compaction state");
+        for (int i = 0; i < compactionPlan.length; i += 3) {
+            check(partitionIdSet.contains(compactionPlan[i]) && compactionPlan[i + 1] >= 0 && compactionPlan[i + 2] > 0,
+                    "invalid compaction move of partition " + compactionPlan[i]);
+        }
+        check(compactionState.length == 0 || compactionState[0] >= 0
+                && compactionState[0] < (compactionPlan.length > 0 ? compactionPlan[2] : 1), "invalid compaction progress");
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new IllegalArgumentException("Invalid snapshot: " + message);
+    }
+    
+    private static long[] readLongs(ByteBuffer buf) {
+        long[] column = new long[buf.getInt()];
+        buf.asLongBuffer().get(column);
+        buf.position(buf.position() + 8 * column.length);
+        return column;
+    }
+    
+    // Fixed column order shared by the encoder and decoder
+    private int[][] intColumns() {
+        return new int[][] {
+            pids, states, priorities, memoryRequirements, burstTimes, arrivalTimes, remainingTimes, ownerIndexes, parentIds,
+            periods, deadlines, sporadicFlags,
+            pageOffsets, pages, readyPids, blockedPids, suspendedPids,
+            pageNumbers, pageOwners, pageAccessCounts, pageRefCounts, pageCopyOnWrite,
+            partitionIds, partitionStarts, partitionSizes, partitionPids,
+            swapPageNumbers, swapOwners, swapAccessCounts, swapRefCounts, swapCopyOnWrite, swapSlots,
+            loadSuspendedPids, pendingAllocationPids, deferredAllocationPids, compactionPlan, compactionState
+        };
+    }
+    
+    private long[][] longColumns() {
+        return new long[][] { pageLastAccessed, swapLastAccessed };
+    }
+    
+    private void setIntColumns(int[][] c) {
+        int i = 0;
+        pids = c[i++]; states = c[i++]; priorities = c[i++]; memoryRequirements = c[i++];
+        burstTimes = c[i++]; arrivalTimes = c[i++]; remainingTimes = c[i++]; ownerIndexes = c[i++]; parentIds = c[i++];
+        periods = c[i++]; deadlines = c[i++]; sporadicFlags = c[i++];
+        pageOffsets = c[i++]; pages = c[i++]; readyPids = c[i++]; blockedPids = c[i++]; suspendedPids = c[i++];
+        pageNumbers = c[i++]; pageOwners = c[i++]; pageAccessCounts = c[i++]; pageRefCounts = c[i++]; pageCopyOnWrite = c[i++];
+        partitionIds = c[i++]; partitionStarts = c[i++]; partitionSizes = c[i++]; partitionPids = c[i++];
+        swapPageNumbers = c[i++]; swapOwners = c[i++]; swapAccessCounts = c[i++]; swapRefCounts = c[i++];
+        swapCopyOnWrite = c[i++]; swapSlots = c[i++];
+        loadSuspendedPids = c[i++];
+        pendingAllocationPids = c[i++]; deferredAllocationPids = c[i++]; compactionPlan = c[i++]; compactionState = c[i++];
+    }
+    
+    public void save(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(toBytes());
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+    }
+    
+    public static KernelSnapshot load(File file) throws IOException {
+        return fromBytes(Files.readAllBytes(file.toPath()));
+    }
+}
+
+// Instrumented kernel operations
+enum KernelOp {
+    CREATE, DISPATCH, BLOCK, WAKEUP, SUSPEND, RESUME, DESTROY,
+    FORK, PAGE_FAULT, COW_FAULT, PAGE_EVICTION, PARTITION_ALLOC, PARTITION_ALLOC_FAILED, COMPACTION
+}
+
+// Kernel Metrics - per-operation counters and sampled latency histograms
+class KernelMetrics {
+    static final long DISABLED = Long.MIN_VALUE;
+    static final long UNSAMPLED = Long.MIN_VALUE + 1;
+    private static final int SAMPLE_MASK = 63; // time 1 in 64 operations to keep overhead under 2%
+    
+    private boolean enabled;
+    private long sampleCounter;
+    private long[] counts;
+    private LatencyHistogram[] latencies;
+    
+    public KernelMetrics() {
+        counts = new long[KernelOp.values().length];
+        latencies = new LatencyHistogram[KernelOp.values().length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+    
+    // Returns a start timestamp, or a sentinel when disabled / not sampled
+    public long begin() {
+        if (!enabled) return DISABLED;
+        if ((++sampleCounter & SAMPLE_MASK) != 0) return UNSAMPLED;
+        return System.nanoTime();
+    }
+    
+    public void end(KernelOp op, long start) {
+        if (start == DISABLED) return;
+        counts[op.ordinal()]++;
+        if (start != UNSAMPLED) {
+            latencies[op.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+    
+    public void count(KernelOp op, long n) {
+        if (enabled) counts[op.ordinal()] += n;
+    }
+    
+    public void reset() {
+        Arrays.fill(counts, 0);
+        for (LatencyHistogram h : latencies) h.reset();
+    }
+    
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public long getCount(KernelOp op) { return counts[op.ordinal()]; }
+    public LatencyHistogram getLatency(KernelOp op) { return latencies[op.ordinal()]; }
+    
+    // Prometheus text exposition format (version 0.0.4)
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP ossim_kernel_ops_total Kernel operations performed.\n");
+        sb.append("# TYPE ossim_kernel_ops_total counter\n");
+        for (KernelOp op : KernelOp.values()) {
+            sb.append(String.format("ossim_kernel_ops_total{op=\"%s\"} %d\n", op.name().toLowerCase(), getCount(op)));
+        }
+        sb.append("# HELP ossim_kernel_op_latency_seconds Sampled kernel operation latency.\n");
+        sb.append("# TYPE ossim_kernel_op_latency_seconds summary\n");
+        double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+        for (KernelOp op : KernelOp.values()) {
+            LatencyHistogram h = getLatency(op);
+            if (h.getCount() == 0) continue;
+            String name = op.name().toLowerCase();
+            for (double q : quantiles) {
+                sb.append(String.format(Locale.ROOT, "ossim_kernel_op_latency_seconds{op=\"%s\",quantile=\"%s\"} %.9f\n",
+                        name, q, h.percentile(q) / 1e9));
+            }
+            sb.append(String.format(Locale.ROOT, "ossim_kernel_op_latency_seconds_sum{op=\"%s\"} %.9f\n", name, h.getSum() / 1e9));
+            sb.append(String.format("ossim_kernel_op_latency_seconds_count{op=\"%s\"} %d\n", name, h.getCount()));
+        }
+        return sb.toString();
+    }
+}
+
+// Latency Histogram - log-linear buckets (HdrHistogram style, 16 sub-buckets per power of two)
+class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    
+    private long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+    
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts[indexOf(value)]++;
+        count++;
+        sum += value;
+        if (value > max) max = value;
+    }
+    
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+    
+    // Upper bound of the bucket at the given index
+    private static long valueAt(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+    
+    public long percentile(double q) {
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) return Math.min(valueAt(i), max);
+        }
+        return max;
+    }
+    
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+    
+    public long getCount() { return count; }
+    public long getSum() { return sum; }
+    public long getMax() { return max; }
+}
+
+// Metrics Exporter - serves KernelMetrics on a local Prometheus scrape endpoint
+class MetricsExporter {
+    private HttpServer server;
+    
+    public MetricsExporter(Kernel kernel, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            String body;
+            kernel.getMutex().acquireUninterruptibly();
+            try {
+                body = kernel.getMetrics().toPrometheus();
+            } finally {
+                kernel.getMutex().release();
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+    
+    public int getPort() { return server.getAddress().getPort(); }
+    
+    public void stop() {
+        server.stop(0);
+    }
+}
+
+// Event Recorder - bounded history of state transitions and per-tick samples
+class EventRecorder {
+    public static final int RECENT_EVENTS = 4096;
+    public static final int HISTORY_BUCKETS = 1024;
+    
+    // Raw transition ring (structure-of-arrays so recording never allocates)
+    private long[] eventTimes;
+    private int[] eventPids;
+    private byte[] eventStates;
+    private int eventHead;
+    private long totalEvents;
+    
+    // Downsampled per-tick history
+    private GanttHistory gantt;
+    private DownsampledSeries utilisation;
+    private DownsampledSeries throughput;
+    private DownsampledSeries queueLength;
+    private int pendingCompletions;
+    private long totalCompletions;
+    private long busyTicks;
+    private long originTick; // history charts start at this clock value
+    
+    public EventRecorder() {
+        this(0);
+    }
+    
+    public EventRecorder(long originTick) {
+        this.originTick = originTick;
+        eventTimes = new long[RECENT_EVENTS];
+        eventPids = new int[RECENT_EVENTS];
+        eventStates = new byte[RECENT_EVENTS];
+        gantt = new GanttHistory(HISTORY_BUCKETS);
+        utilisation = new DownsampledSeries(HISTORY_BUCKETS);
+        throughput = new DownsampledSeries(HISTORY_BUCKETS);
+        queueLength = new DownsampledSeries(HISTORY_BUCKETS);
+    }
+    
+    public void recordTransition(long time, int pid, ProcessState state) {
+        int slot = eventHead;
+        eventTimes[slot] = time;
+        eventPids[slot] = pid;
+        eventStates[slot] = (byte) state.ordinal();
+        eventHead = (slot + 1) % RECENT_EVENTS;
+        totalEvents++;
+        if (state == ProcessState.TERMINATED) pendingCompletions++;
+    }
+    
+    public void recordTick(long time, int runningPid, int readyLength) {
+        boolean busy = runningPid >= 0;
+        if (busy) busyTicks++;
+        long t = time - originTick;
+        gantt.add(t, runningPid);
+        utilisation.add(t, busy ? 1 : 0);
+        throughput.add(t, pendingCompletions);
+        queueLength.add(t, readyLength);
+        totalCompletions += pendingCompletions;
+        pendingCompletions = 0;
+    }
+    
+    // Most recent transitions, newest last
+    public List<String> recentEvents(int max) {
+        int available = (int) Math.min(totalEvents, RECENT_EVENTS);
+        int n = Math.min(max, available);
+        List<String> result = new ArrayList<>(n);
+        ProcessState[] states = ProcessState.values();
+        for (int i = n; i > 0; i--) {
+            int slot = Math.floorMod(eventHead - i, RECENT_EVENTS);
+            result.add(String.format("t=%-8d P%-5d -> %s", eventTimes[slot], eventPids[slot], states[eventStates[slot]]));
+        }
+        return result;
+    }
+    
+    public long getTotalEvents() { return totalEvents; }
+    public long getTotalCompletions() { return totalCompletions; }
+    public long getBusyTicks() { return busyTicks; }
+    public long getOriginTick() { return originTick; }
+    public GanttHistory getGantt() { return gantt; }
+    public DownsampledSeries getUtilisation() { return utilisation; }
+    public DownsampledSeries getThroughput() { return throughput; }
+    public DownsampledSeries getQueueLength() { return queueLength; }
+}
+
+// Fixed-capacity time series; when full, adjacent buckets merge and the bucket width doubles
+class DownsampledSeries {
+    private double[] sums;
+    private int[] counts;
+    private int capacity;
+    private int size;
+    private long bucketTicks = 1;
+    private double max;
+    private int generation; // bumped on every merge so charts know to repaint fully
+    
+    public DownsampledSeries(int capacity) {
+        this.capacity = capacity;
+        this.sums = new double[capacity];
+        this.counts = new int[capacity];
+    }
+    
+    public void add(long tick, double value) {
+        int bucket = (int) (tick / bucketTicks);
+        while (bucket >= capacity) {
+            merge();
+            bucket = (int) (tick / bucketTicks);
+        }
+        sums[bucket] += value;
+        counts[bucket]++;
+        size = Math.max(size, bucket + 1);
+        max = Math.max(max, sums[bucket] / counts[bucket]);
+    }
+    
+    private void merge() {
+        int half = (size + 1) / 2;
+        for (int i = 0; i < half; i++) {
+            int a = 2 * i, b = 2 * i + 1;
+            sums[i] = sums[a] + (b < size ? sums[b] : 0);
+            counts[i] = counts[a] + (b < size ? counts[b] : 0);
+        }
+        Arrays.fill(sums, half, capacity, 0);
+        Arrays.fill(counts, half, capacity, 0);
+        size = half;
+        bucketTicks *= 2;
+        generation++;
+    }
+    
+    public double mean(int bucket) {
+        return counts[bucket] == 0 ? 0 : sums[bucket] / counts[bucket];
+    }
+    
+    public double sum(int bucket) { return sums[bucket]; }
+    public int size() { return size; }
+    public int capacity() { return capacity; }
+    public long getBucketTicks() { return bucketTicks; }
+    public double getMax() { return max; }
+    public int getGeneration() { return generation; }
+}
+
+// Gantt history: dominant process per bucket, kept with a majority-vote counter so merges stay O(1)
+class GanttHistory {
+    private int[] pids;
+    private int[] votes;
+    private int capacity;
+    private int size;
+    private long bucketTicks = 1;
+    private int generation;
+    
+    public GanttHistory(int capacity) {
+        this.capacity = capacity;
+        this.pids = new int[capacity];
+        this.votes = new int[capacity];
+    }
+    
+    public void add(long tick, int pid) {
+        int bucket = (int) (tick / bucketTicks);
+        while (bucket >= capacity) {
+            merge();
+            bucket = (int) (tick / bucketTicks);
+        }
+        for (int i = size; i <= bucket; i++) {
+            pids[i] = -1;
+            votes[i] = 0;
+        }
+        size = Math.max(size, bucket + 1);
+        vote(bucket, pid, 1);
+    }
+    
+    private void vote(int bucket, int pid, int weight) {
+        if (weight == 0) return;
+        if (votes[bucket] == 0) {
+            pids[bucket] = pid;
+            votes[bucket] = weight;
+        } else if (pids[bucket] == pid) {
+            votes[bucket] += weight;
+        } else if (votes[bucket] >= weight) {
+            votes[bucket] -= weight;
+        } else {
+            pids[bucket] = pid;
+            votes[bucket] = weight - votes[bucket];
+        }
+    }
+    
+    private void merge() {
+        int half = (size + 1) / 2;
+        for (int i = 0; i < half; i++) {
+            int a = 2 * i, b = 2 * i + 1;
+            int pid = pids[a], weight = votes[a];
+            pids[i] = pid;
+            votes[i] = weight;
+            if (b < size) vote(i, pids[b], votes[b]);
+        }
+        Arrays.fill(pids, half, capacity, -1);
+        Arrays.fill(votes, half, capacity, 0);
+        size = half;
+        bucketTicks *= 2;
+        generation++;
+    }
+    
+    // Process that dominated the bucket, or -1 when the CPU was mostly idle
+    public int pidAt(int bucket) { return pids[bucket]; }
+    public int size() { return size; }
+    public int capacity() { return capacity; }
+    public long getBucketTicks() { return bucketTicks; }
+    public int getGeneration() { return generation; }
+}
+
+// Simulation Executor - runs kernel operations on a background worker so the EDT stays responsive
+class SimulationExecutor {
+    private static final int FRAME_MILLIS = 33; // ~30 UI refreshes per second
+    private static final int STEPS_PER_CHUNK = 1000; // steps run per mutex hold during long runs
+    
+    private Kernel kernel;
+    private ExecutorService worker;
+    private javax.swing.Timer frameTimer;
+    private List<Runnable> refreshListeners;
+    private AtomicBoolean dirty;
+    private Object pauseLock;
+    private volatile boolean paused;
+    private volatile boolean cancelled;
+    private volatile boolean running;
+    private AtomicInteger queuedRuns;       // submitted but not started yet
+    private volatile long cancelEpoch;      // bumped by cancel(); runs submitted before the bump are cancelled
+    private volatile boolean yieldRequested; // the EDT is waiting in read(), so end the chunk early
+    private volatile Thread preparing;      // prepareRun() work in progress, interrupted by cancel()
+    private volatile String runName = "";
+    private volatile long stepsDone;
+    private volatile long stepsTotal;
+    private MetricsExporter metricsExporter;
+    
+    public SimulationExecutor(Kernel kernel) {
+        this.kernel = kernel;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "kernel-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.refreshListeners = new CopyOnWriteArrayList<>();
+        this.dirty = new AtomicBoolean(true);
+        this.pauseLock = new Object();
+        this.queuedRuns = new AtomicInteger();
+        this.frameTimer = new javax.swing.Timer(FRAME_MILLIS, e -> refreshIfDirty());
+        this.frameTimer.start();
+    }
+    
+    // Run a single kernel operation off the EDT
+    public void submit(Runnable op) {
+        submit(() -> { op.run(); return null; }, null);
+    }
+    
+    // Run a kernel operation off the EDT and hand its result back on the EDT
+    public <T> void submit(Supplier<T> op, Consumer<T> onDone) {
+        worker.execute(() -> {
+            T result;
+            kernel.getMutex().acquireUninterruptibly();
+            try {
+                result = op.get();
+            } finally {
+                kernel.getMutex().release();
+            }
+            dirty.set(true);
+            if (onDone != null) {
+                SwingUtilities.invokeLater(() -> onDone.accept(result));
+            }
+        });
+    }
+    
+    // Repeat a kernel step, releasing the kernel between chunks so the UI can sample it
+    public void runSteps(String name, long steps, Runnable step) {
+        runSteps(name, steps, () -> { step.run(); return true; });
+    }
+    
+    // As above, but stop early once a step reports there is nothing left to do
+    public void runSteps(String name, long steps, BooleanSupplier step) {
+        runSteps(name, steps, step, null);
+    }
+    
+    // As above; 'onEnd' runs on the worker once the run finishes or is cancelled, even before it started
+    public void runSteps(String name, long steps, BooleanSupplier step, Runnable onEnd) {
+        long epoch = cancelEpoch;
+        queuedRuns.incrementAndGet();
+        worker.execute(() -> {
+            runName = name;
+            stepsDone = 0;
+            stepsTotal = steps;
+            cancelled = epoch != cancelEpoch;
+            running = true;
+            queuedRuns.decrementAndGet();
+            try {
+                while (stepsDone < steps && !cancelled) {
+                    awaitResume();
+                    if (cancelled) break;
+                    long chunkEnd = Math.min(steps, stepsDone + STEPS_PER_CHUNK);
+                    long done = stepsDone;
+                    boolean more = true;
+                    kernel.getMutex().acquireUninterruptibly();
+                    try {
+                        while (done < chunkEnd && more && !yieldRequested) {
+                            more = step.getAsBoolean();
+                            done++;
+                        }
+                    } finally {
+                        kernel.getMutex().release();
+                    }
+                    while (yieldRequested && !cancelled) {
+                        LockSupport.parkNanos(100_000); // let the waiting reader take the kernel first
+                    }
+                    stepsDone = done;
+                    dirty.set(true);
+                    if (!more) break;
+                }
+            } finally {
+                running = false;
+                if (queuedRuns.get() == 0) paused = false; // a pause issued for a queued run still applies
+                dirty.set(true);
+                if (onEnd != null) onEnd.run();
+            }
+        });
+    }
+    
+    // Slow work that needs no kernel access, such as parsing a trace, runs on its own thread so the
+    // kernel stays readable. It counts as a queued run; cancel() interrupts it. 'then' receives the
+    // result on that thread and normally queues the run itself; failures go to 'onError' on the EDT
+    public <T> void prepareRun(String name, Callable<T> work, Consumer<T> then, Consumer<String> onError) {
+        long epoch = cancelEpoch;
+        queuedRuns.incrementAndGet();
+        Thread t = new Thread(() -> {
+            try {
+                T result = work.call();
+                if (epoch == cancelEpoch) then.accept(result);
+            } catch (Exception e) {
+                if (epoch == cancelEpoch) {
+                    String message = e.getMessage() != null ? e.getMessage() : e.toString();
+                    SwingUtilities.invokeLater(() -> onError.accept(message));
+                }
+            } finally {
+                preparing = null;
+                queuedRuns.decrementAndGet();
+                dirty.set(true);
+            }
+        }, "run-preparation");
+        t.setDaemon(true);
+        runName = name;
+        preparing = t;
+        t.start();
+        dirty.set(true);
+    }
+    
+    private void awaitResume() {
+        synchronized (pauseLock) {
+            while (paused && !cancelled) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                }
+            }
+        }
+    }
+    
+    public void pause() {
+        if (isRunning()) {
+            paused = true;
+            dirty.set(true);
+        }
+    }
+    
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+        dirty.set(true);
+    }
+    
+    // Cancels the current run and any run still queued behind it
+    public void cancel() {
+        synchronized (pauseLock) {
+            cancelEpoch++;
+            cancelled = true;
+            pauseLock.notifyAll();
+        }
+        Thread prep = preparing;
+        if (prep != null) prep.interrupt();
+        dirty.set(true);
+    }
+    
+    // Read kernel state from the EDT while no operation is mid-flight; a long run gives way
+    // after its current step instead of finishing its chunk
+    public <T> T read(Supplier<T> reader) {
+        try {
+            while (!kernel.getMutex().tryAcquire(FRAME_MILLIS, TimeUnit.MILLISECONDS)) {
+                yieldRequested = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            kernel.getMutex().acquireUninterruptibly();
+        } finally {
+            yieldRequested = false;
+        }
+        try {
+            return reader.get();
+        } finally {
+            kernel.getMutex().release();
+        }
+    }
+    
+    public void addRefreshListener(Runnable listener) {
+        refreshListeners.add(listener);
+        dirty.set(true);
+    }
+    
+    public void removeRefreshListener(Runnable listener) {
+        refreshListeners.remove(listener);
+    }
+    
+    public void requestRefresh() {
+        dirty.set(true);
+    }
+    
+    // Called by the frame timer: coalesces any number of kernel changes into one repaint per frame
+    private void refreshIfDirty() {
+        if (!dirty.getAndSet(false)) return;
+        if (!kernel.getMutex().tryAcquire()) {
+            dirty.set(true); // worker is mid-chunk, try again next frame
+            return;
+        }
+        try {
+            for (Runnable listener : refreshListeners) {
+                listener.run();
+            }
+        } finally {
+            kernel.getMutex().release();
+        }
+    }
+    
+    public String getStatus() {
+        if (!running && preparing != null) return "Preparing " + runName;
+        if (!running) return queuedRuns.get() > 0 ? (paused ? "Paused (queued)" : "Queued") : "Idle";
+        String state = paused ? "Paused" : (cancelled ? "Cancelling" : "Running");
+        if (stepsTotal == Long.MAX_VALUE) return String.format("%s %s: %,d steps", state, runName, stepsDone);
+        return String.format("%s %s: %,d / %,d steps", state, runName, stepsDone, stepsTotal);
+    }
+    
+    public boolean isRunning() { return running || queuedRuns.get() > 0; }
+    public boolean isPaused() { return paused; }
+    
+    // Start, move or stop (port 0) the local Prometheus endpoint
+    public void setMetricsPort(int port) throws IOException {
+        if (metricsExporter != null && metricsExporter.getPort() == port) return;
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+            metricsExporter = null;
+        }
+        if (port > 0) {
+            metricsExporter = new MetricsExporter(kernel, port);
+        }
+    }
+    
+    public int getMetricsPort() {
+        return metricsExporter == null ? 0 : metricsExporter.getPort();
+    }
+    
+    public void shutdown() {
+        if (metricsExporter != null) metricsExporter.stop();
+        cancel();
+        frameTimer.stop();
+        worker.shutdownNow();
+    }
+}
+
+// Trace Process - one process recovered from a scheduler trace, in simulator ticks
+class TraceProcess {
+    int tracePid;
+    String owner;
+    int priority;
+    long arrival;
+    long burst;
+    int memoryKb;
+    
+    TraceProcess(int tracePid, String owner, int priority, long arrival, long burst, int memoryKb) {
+        this.tracePid = tracePid;
+        this.owner = owner;
+        this.priority = priority;
+        this.arrival = arrival;
+        this.burst = burst;
+        this.memoryKb = memoryKb;
+    }
+}
+
+// Result of importing a workload trace: the processes found and how many lines could not be read
+class TraceImport {
+    List<TraceProcess> processes;
+    long malformed;
+    
+    TraceImport(List<TraceProcess> processes, long malformed) {
+        this.processes = processes;
+        this.malformed = malformed;
+    }
+}
+
+// Trace Importer - parsers for workload traces captured on Linux hosts. Files are cut into
+// newline-aligned chunks that are parsed on a thread pool; partial results are merged strictly
+// in file order with a bounded number of chunks in flight, so memory stays flat on huge files
+class TraceImporter {
+    static final int CHUNK_BYTES = 4 << 20;
+    private static final int CLK_TCK = 100; // USER_HZ: jiffies per second in /proc
+    
+    // Parse 'file' chunk by chunk on all cores, handing each result to 'sink' in file order
+    static <T> void parseChunks(Path file, Function<String, T> parser, Consumer<T> sink) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "trace-parser");
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<T>> inFlight = new ArrayDeque<>();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long start = 0;
+            while (start < size) {
+                long end = lineEnd(ch, Math.min(size, start + CHUNK_BYTES), size);
+                long from = start;
+                inFlight.add(pool.submit(() -> parser.apply(read(ch, from, (int) (end - from)))));
+                start = end;
+                if (inFlight.size() >= threads * 2) sink.accept(inFlight.poll().get());
+            }
+            while (!inFlight.isEmpty()) sink.accept(inFlight.poll().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("trace import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("cannot parse " + file + ": " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    // Position just past the first newline at or after 'pos'
+    private static long lineEnd(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        while (pos < size) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+    
+    private static String read(FileChannel ch, long pos, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) break;
+        }
+        return new String(buf.array(), 0, buf.position(), StandardCharsets.ISO_8859_1);
+    }
+    
+    // Value of "key=value" in a perf line, or null
+    static String field(String line, String key) {
+        int i = line.indexOf(key + "=");
+        if (i < 0) return null;
+        i += key.length() + 1;
+        int end = line.indexOf(' ', i);
+        return line.substring(i, end < 0 ? line.length() : end);
+    }
+    
+    // ---- /proc samples -------------------------------------------------------------------
+    // Concatenated /proc/<pid>/stat lines, optionally interleaved with /proc/uptime lines that
+    // mark when each sample was taken. Processes already running when the trace starts arrive at
+    // tick 0 with the CPU they used during the trace; later ones arrive at their start time with
+    // all the CPU they used. One simulator tick is one jiffy.
+    
+    static class ProcChunk {
+        Map<Long, long[]> procs = new HashMap<>(); // (starttime << 22 | pid) -> {pid, starttime, nice, firstCpu, lastCpu, maxRss}
+        Map<Long, String> comms = new HashMap<>();
+        long firstUptime = -1;  // jiffies
+        int malformed;
+    }
+    
+    static ProcChunk parseProcChunk(String text) {
+        ProcChunk chunk = new ProcChunk();
+        int pos = 0;
+        while (pos < text.length()) {
+            int nl = text.indexOf('\n', pos);
+            String line = text.substring(pos, nl < 0 ? text.length() : nl).trim();
+            pos = nl < 0 ? text.length() : nl + 1;
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int open = line.indexOf(" (");
+            int close = line.lastIndexOf(") ");
+            try {
+                if (open < 0 || close < open) {
+                    String[] uptime = line.split("\\s+");
+                    if (uptime.length == 2 && chunk.firstUptime < 0) {
+                        chunk.firstUptime = (long) (Double.parseDouble(uptime[0]) * CLK_TCK);
+                        continue;
+                    } else if (uptime.length == 2) {
+                        continue;
+                    }
+                    chunk.malformed++;
+                    continue;
+                }
+                int pid = Integer.parseInt(line.substring(0, open));
+                String comm = line.substring(open + 2, close);
+                String[] f = line.substring(close + 2).split(" ");
+                // f[0] is field 3 (state); field k of stat(5) is f[k - 3]
+                long cpu = Long.parseLong(f[11]) + Long.parseLong(f[12]);
+                long nice = Long.parseLong(f[16]);
+                long start = Long.parseLong(f[19]);
+                long rss = Long.parseLong(f[21]);
+                long key = start << 22 | pid;
+                long[] p = chunk.procs.get(key);
+                if (p == null) {
+                    chunk.procs.put(key, new long[] {pid, start, nice, cpu, cpu, rss});
+                    chunk.comms.put(key, comm);
+                } else {
+                    p[4] = Math.max(p[4], cpu);
+                    p[5] = Math.max(p[5], rss);
+                }
+            } catch (RuntimeException e) {
+                chunk.malformed++;
+            }
+        }
+        return chunk;
+    }
+    
+    public static TraceImport importProcSamples(Path file) throws IOException {
+        ProcChunk all = new ProcChunk();
+        parseChunks(file, TraceImporter::parseProcChunk, chunk -> {
+            if (all.firstUptime < 0) all.firstUptime = chunk.firstUptime;
+            all.malformed += chunk.malformed;
+            for (Map.Entry<Long, long[]> e : chunk.procs.entrySet()) {
+                long[] p = all.procs.get(e.getKey());
+                long[] c = e.getValue();
+                if (p == null) {
+                    all.procs.put(e.getKey(), c);
+                    all.comms.put(e.getKey(), chunk.comms.get(e.getKey()));
+                } else {
+                    p[4] = Math.max(p[4], c[4]);
+                    p[5] = Math.max(p[5], c[5]);
+                }
+            }
+        });
+        long windowStart = all.firstUptime;
+        if (windowStart < 0) {
+            windowStart = Long.MAX_VALUE;
+            for (long[] p : all.procs.values()) windowStart = Math.min(windowStart, p[1]);
+        }
+        List<TraceProcess> result = new ArrayList<>(all.procs.size());
+        for (Map.Entry<Long, long[]> e : all.procs.entrySet()) {
+            long[] p = e.getValue();
+            boolean preexisting = p[1] < windowStart;
+            long arrival = preexisting ? 0 : p[1] - windowStart;
+            long burst = Math.max(1, preexisting ? p[4] - p[3] : p[4]);
+            result.add(new TraceProcess((int) p[0], all.comms.get(e.getKey()), (int) p[2] + 20, arrival, burst,
+                    (int) Math.min(Integer.MAX_VALUE, p[5] * 4)));
+        }
+        return finish(file, result, all.malformed);
+    }
+    
+    // ---- perf sched ----------------------------------------------------------------------
+    // 'perf sched script' output. CPU time comes from sched_switch intervals, arrival from the
+    // first fork/wakeup/switch naming the pid. A chunk cannot see what was running on a CPU before
+    // its first switch, so it reports that switch and its still-open intervals for the merge to stitch.
+    
+    static class SchedChunk {
+        Map<Integer, long[]> procs = new HashMap<>();      // pid -> {first seen us, cpu us, prio}
+        Map<Integer, String> comms = new HashMap<>();
+        Map<Integer, long[]> firstSwitch = new HashMap<>(); // cpu -> {time us, prev pid}
+        Map<Integer, long[]> running = new HashMap<>();     // cpu -> {pid, since us}
+        long lastTime = Long.MIN_VALUE;
+        int malformed;
+        
+        long[] proc(int pid, long time) {
+            long[] p = procs.get(pid);
+            if (p == null) {
+                p = new long[] {time, 0, -1};
+                procs.put(pid, p);
+            }
+            p[0] = Math.min(p[0], time);
+            return p;
+        }
+    }
+    
+    static SchedChunk parseSchedChunk(String text) {
+        SchedChunk chunk = new SchedChunk();
+        int pos = 0;
+        while (pos < text.length()) {
+            int nl = text.indexOf('\n', pos);
+            String line = text.substring(pos, nl < 0 ? text.length() : nl);
+            pos = nl < 0 ? text.length() : nl + 1;
+            int event = line.indexOf("sched:sched_");
+            if (event < 0) continue;
+            try {
+                int lb = line.lastIndexOf(" [", event);
+                int rb = line.indexOf(']', lb);
+                int cpu = Integer.parseInt(line.substring(lb + 2, rb).trim());
+                String ts = line.substring(rb + 1, line.indexOf(':', rb)).trim();
+                long time = Math.round(Double.parseDouble(ts) * 1e6);
+                chunk.lastTime = Math.max(chunk.lastTime, time);
+                if (line.startsWith("sched_switch:", event + 6)) {
+                    int prev, next, prio;
+                    String comm;
+                    if (field(line, "prev_pid") != null) {
+                        prev = Integer.parseInt(field(line, "prev_pid"));
+                        next = Integer.parseInt(field(line, "next_pid"));
+                        prio = next == 0 ? 0 : Integer.parseInt(field(line, "next_prio"));
+                        comm = field(line, "next_comm");
+                    } else { // perf's default "prev:pid [prio] S ==> next:pid [prio]"
+                        String payload = payload(line, event);
+                        int arrow = payload.indexOf(" ==> ");
+                        if (arrow < 0) throw new IllegalArgumentException("unrecognised sched_switch");
+                        prev = task(payload.substring(0, arrow))[0];
+                        String right = payload.substring(arrow + 5).trim();
+                        int[] t = task(right);
+                        next = t[0];
+                        prio = t[1];
+                        comm = right.substring(0, t[2]).trim();
+                    }
+                    long[] open = chunk.running.get(cpu);
+                    if (open == null) {
+                        chunk.firstSwitch.put(cpu, new long[] {time, prev});
+                    } else if (open[0] != 0) {
+                        chunk.proc((int) open[0], open[1])[1] += time - open[1];
+                    }
+                    chunk.running.put(cpu, new long[] {next, time});
+                    if (next != 0) {
+                        chunk.proc(next, time)[2] = prio;
+                        chunk.comms.putIfAbsent(next, comm);
+                    }
+                } else if (line.startsWith("sched_process_fork:", event + 6)) {
+                    int child = Integer.parseInt(field(line, "child_pid"));
+                    chunk.proc(child, time);
+                    chunk.comms.putIfAbsent(child, field(line, "child_comm"));
+                } else if (line.startsWith("sched_wakeup", event + 6)) {
+                    int pid;
+                    String comm;
+                    if (field(line, "pid") != null) {
+                        pid = Integer.parseInt(field(line, "pid"));
+                        comm = field(line, "comm");
+                    } else { // "comm:pid [prio] CPU:nnn"
+                        String payload = payload(line, event);
+                        int[] t = task(payload);
+                        pid = t[0];
+                        comm = payload.substring(0, t[2]).trim();
+                    }
+                    if (pid != 0) {
+                        chunk.proc(pid, time);
+                        chunk.comms.putIfAbsent(pid, comm);
+                    }
+                }
+            } catch (RuntimeException e) {
+                chunk.malformed++;
+            }
+        }
+        return chunk;
+    }
+    
+    // Event arguments after "sched:sched_xxx:"
+    private static String payload(String line, int event) {
+        return line.substring(line.indexOf(':', event + 6) + 1).trim();
+    }
+    
+    // A task as perf prints it by default, "comm:pid [prio]" (comm may itself contain ':'): {pid, prio, end of comm}
+    private static int[] task(String s) {
+        int lb = s.indexOf(" [");
+        int rb = s.indexOf(']', lb);
+        int colon = s.lastIndexOf(':', lb);
+        if (lb < 0 || rb < 0 || colon < 0) throw new IllegalArgumentException("unrecognised task " + s);
+        return new int[] {Integer.parseInt(s.substring(colon + 1, lb)), Integer.parseInt(s.substring(lb + 2, rb).trim()), colon};
+    }
+    
+    // 'tickMicros' microseconds of trace time make one simulator tick
+    public static TraceImport importPerfSched(Path file, long tickMicros) throws IOException {
+        SchedChunk all = new SchedChunk();
+        parseChunks(file, TraceImporter::parseSchedChunk, chunk -> {
+            for (Map.Entry<Integer, long[]> e : chunk.firstSwitch.entrySet()) {
+                long[] open = all.running.get(e.getKey()); // the interval left open by earlier chunks ends here
+                if (open != null && open[0] != 0) all.proc((int) open[0], open[1])[1] += e.getValue()[0] - open[1];
+            }
+            all.running.putAll(chunk.running);
+            for (Map.Entry<Integer, long[]> e : chunk.procs.entrySet()) {
+                long[] c = e.getValue();
+                long[] p = all.proc(e.getKey(), c[0]);
+                p[1] += c[1];
+                if (p[2] < 0) p[2] = c[2];
+            }
+            for (Map.Entry<Integer, String> e : chunk.comms.entrySet()) all.comms.putIfAbsent(e.getKey(), e.getValue());
+            all.lastTime = Math.max(all.lastTime, chunk.lastTime);
+            all.malformed += chunk.malformed;
+        });
+        for (long[] open : all.running.values()) {
+            if (open[0] != 0) all.proc((int) open[0], open[1])[1] += all.lastTime - open[1];
+        }
+        long origin = Long.MAX_VALUE;
+        for (long[] p : all.procs.values()) origin = Math.min(origin, p[0]);
+        List<TraceProcess> result = new ArrayList<>(all.procs.size());
+        for (Map.Entry<Integer, long[]> e : all.procs.entrySet()) {
+            long[] p = e.getValue();
+            int priority = p[2] < 0 ? 20 : (int) Math.max(0, p[2] - 100); // kernel prio 100..139 -> nice + 20
+            result.add(new TraceProcess(e.getKey(), all.comms.getOrDefault(e.getKey(), "pid" + e.getKey()), priority,
+                    (p[0] - origin) / tickMicros, Math.max(1, (p[1] + tickMicros - 1) / tickMicros), 0));
+        }
+        return finish(file, result, all.malformed);
+    }
+    
+    // A trace yielding no processes is the wrong file or an unsupported format, never an empty workload
+    private static TraceImport finish(Path file, List<TraceProcess> result, long malformed) throws IOException {
+        if (result.isEmpty()) {
+            throw new IOException("no processes found in " + file + " (" + malformed + " malformed lines)");
+        }
+        result.sort(Comparator.comparingLong((TraceProcess t) -> t.arrival).thenComparingInt(t -> t.tracePid));
+        return new TraceImport(result, malformed);
+    }
+    
+    // ---- page faults ---------------------------------------------------------------------
+    // Either 'perf script' lines of exceptions:page_fault_user ("comm pid [cpu] time: ...
+    // address=0x...") or plain "time pid address" lines. Addresses become page numbers here;
+    // PageFaultStream maps them onto simulator pages in order.
+    
+    static class FaultChunk {
+        int size;
+        int[] pids = new int[1024];
+        long[] pages = new long[1024];
+        Map<Integer, String> comms = new HashMap<>();
+        int malformed;
+        
+        void add(int pid, long page) {
+            if (size == pids.length) {
+                pids = Arrays.copyOf(pids, size * 2);
+                pages = Arrays.copyOf(pages, size * 2);
+            }
+            pids[size] = pid;
+            pages[size++] = page;
+        }
+    }
+    
+    static FaultChunk parseFaultChunk(String text, int pageSize) {
+        FaultChunk chunk = new FaultChunk();
+        int pos = 0;
+        while (pos < text.length()) {
+            int nl = text.indexOf('\n', pos);
+            String line = text.substring(pos, nl < 0 ? text.length() : nl).trim();
+            pos = nl < 0 ? text.length() : nl + 1;
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            try {
+                String address = field(line, "address");
+                int pid;
+                if (address != null) {
+                    int lb = line.indexOf(" [");
+                    String head = line.substring(0, lb).trim();
+                    int space = head.lastIndexOf(' ');
+                    pid = Integer.parseInt(head.substring(space + 1));
+                    if (space > 0) chunk.comms.putIfAbsent(pid, head.substring(0, space).trim());
+                } else {
+                    String[] f = line.split("\\s+");
+                    pid = Integer.parseInt(f[1]);
+                    address = f[2];
+                }
+                long addr = address.startsWith("0x") ? Long.parseUnsignedLong(address.substring(2), 16) : Long.parseLong(address);
+                chunk.add(pid, Long.divideUnsigned(addr, pageSize));
+            } catch (RuntimeException e) {
+                chunk.malformed++;
+            }
+        }
+        return chunk;
+    }
+}
+
+// Page-Fault Stream - replays a fault trace through the kernel's paging one reference per step,
+// while the importer parses ahead on other threads
+class PageFaultStream {
+    private static final FaultChunkEnd END = new FaultChunkEnd();
+    
+    private Kernel kernel;
+    private BlockingQueue<Object> chunks;
+    private Thread producer;
+    private TraceImporter.FaultChunk current;
+    private int index;
+    private Map<Integer, PCB> processes;           // trace pid -> simulated process
+    private Map<Integer, Map<Long, Integer>> pageIndex; // trace pid -> trace page -> index into the process's pages
+    private long references;
+    private long malformed;
+    private volatile String error;
+    private volatile boolean closed; // the consumer stopped; the reader drops what it has and exits
+    private boolean finished;
+    
+    private static class FaultChunkEnd {}
+    
+    public PageFaultStream(Kernel kernel, Path file) {
+        this.kernel = kernel;
+        this.chunks = new ArrayBlockingQueue<>(8);
+        this.processes = new HashMap<>();
+        this.pageIndex = new HashMap<>();
+        int pageSize = kernel.getPageSize();
+        producer = new Thread(() -> {
+            try {
+                TraceImporter.parseChunks(file, text -> TraceImporter.parseFaultChunk(text, pageSize), chunk -> {
+                    if (!hand(chunk)) throw new CancellationException();
+                });
+            } catch (IOException | RuntimeException e) {
+                if (!closed) error = e.getMessage(); // an interrupt from close() is not a failure
+            }
+            hand(END);
+        }, "fault-trace-reader");
+        producer.setDaemon(true);
+        producer.start();
+    }
+    
+    // Replay the next reference; false once the trace is exhausted
+    public boolean step() {
+        while (current == null || index >= current.size) {
+            if (finished) return false;
+            Object next;
+            try {
+                next = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                return false;
+            }
+            if (next == END) {
+                finished = true;
+                return false;
+            }
+            current = (TraceImporter.FaultChunk) next;
+            malformed += current.malformed;
+            index = 0;
+        }
+        int pid = current.pids[index];
+        long page = current.pages[index++];
+        PCB pcb = processes.get(pid);
+        if (pcb == null || pcb.getState() == ProcessState.TERMINATED || kernel.getProcess(pcb.getProcessId()) == null) {
+            pcb = kernel.createProcess(current.comms.getOrDefault(pid, "pid" + pid), 0, 0, 1, (int) kernel.getClock());
+            processes.put(pid, pcb);
+            pageIndex.put(pid, new HashMap<>());
+        }
+        Map<Long, Integer> pages = pageIndex.get(pid);
+        Integer i = pages.get(page);
+        if (i == null) {
+            i = pages.size();
+            pages.put(page, i);
+            kernel.reservePages(pcb, i + 1 - pcb.getPageNumbers().size());
+        }
+        kernel.referencePage(pcb, pcb.getPageNumbers().get(i));
+        references++;
+        return true;
+    }
+    
+    // Queue a chunk for the consumer, waiting for room unless the stream is closed meanwhile
+    private boolean hand(Object item) {
+        try {
+            while (!closed) {
+                if (chunks.offer(item, 100, TimeUnit.MILLISECONDS)) return true;
+            }
+        } catch (InterruptedException e) {
+            // only close() interrupts the reader
+        }
+        return false;
+    }
+    
+    public void close() {
+        finished = true;
+        closed = true;
+        producer.interrupt();
+        chunks.clear();
+    }
+    
+    public long getReferences() { return references; }
+    public long getMalformed() { return malformed; }
+    public int getProcessCount() { return processes.size(); }
+    public String getError() { return error; }
+}
+
+// Trace Replay - feeds traced processes into the kernel at their arrival ticks while a scheduler runs
+class TraceReplay {
+    private Kernel kernel;
+    private List<TraceProcess> processes;
+    private Runnable scheduler;
+    private long origin;
+    private int next;
+    
+    public TraceReplay(Kernel kernel, List<TraceProcess> processes, Runnable scheduler) {
+        this.kernel = kernel;
+        this.processes = processes;
+        this.scheduler = scheduler;
+        this.origin = kernel.getClock();
+    }
+    
+    // One scheduler tick; false once every process has arrived and the CPU has nothing left to run
+    public boolean step() {
+        long now = kernel.getClock() - origin;
+        while (next < processes.size() && processes.get(next).arrival <= now) {
+            TraceProcess t = processes.get(next++);
+            kernel.createProcess(t.owner, t.priority, t.memoryKb, (int) Math.min(Integer.MAX_VALUE, t.burst), (int) kernel.getClock());
+        }
+        scheduler.run();
+        return next < processes.size() || kernel.getRunningProcess() != null || !kernel.getReadyQueue().isEmpty();
+    }
+    
+    public int getArrived() { return next; }
+    public int getTotal() { return processes.size(); }
+}
+
+// Kernel Shell - line-oriented command interface to the kernel for interactive use and scripts.
+// Commands run directly on the calling thread and results stream to a buffered writer, so large
+// scripted experiments are not held back by the GUI
+class KernelShell {
+    private static final String HELP = String.join("\n",
+            "Processes:",
+            "  create <owner> <priority> <memoryKB> <burst> [arrival]",
+            "  destroy|suspend|resume|block|wakeup <pid>",
+            "  priority <pid> <value>          fork <pid>",
+            "  rt <owner> <wcet> <period> <deadline> [sporadic] [edf|rm]",
+            "  group <path> <weight> <quota|-1> <period>   (applies under 'schedule fair' only)",
+            "  schedule <fcfs|sjf|rr|edf|rm|fair> [steps]",
+            "  switchcost <overheadTicks> <warmupTicks> <decayTicks> <cpus> [affinity]",
+            "Traces:",
+            "  import <proc|sched> <file> [tickMicros]   load processes from /proc samples or perf sched script",
+            "  replay <rr|edf|rm|fair> [maxSteps]   run the imported processes at their arrival ticks",
+            "  faults <file> [maxReferences]   replay a page-fault trace through the pager",
+            "Memory:",
+            "  reference <trace|scan> <count>  write <count>     lru <maxPages>",
+            "  pagesize <bytes>                frames <count>    prefetch <depth>",
+            "  partition alloc <pid> | free <id> | compact | reset | show",
+            "  numa <nodes> <frames[,frames..]> <localNs[,..]> <remoteNs[,..]>   (one value per node, or one for all)",
+            "  numa policy <first_touch|interleave|bind> [migrate]",
+            "  numa bind <node[,node..]>",
+            "  pin <pid> <node|-1>",
+            "Inspection and scripting:",
+            "  ps [limit]   stats   metrics   snapshot <save|load> <file>",
+            "  repeat <n> <command>   source <file>   echo <text>   quit",
+            "Several commands may share a line separated by ';'. Lines starting with # are comments.");
+    private static final int MAX_SOURCE_DEPTH = 16; // scripts sourcing scripts; stops a script that sources itself
+    
+    private Kernel kernel;
+    private PrintWriter out;
+    private int errors;
+    private boolean quit;
+    private int sourceDepth;
+    private List<TraceProcess> trace;
+    
+    public KernelShell(Kernel kernel, PrintWriter out) {
+        this.kernel = kernel;
+        this.out = out;
+    }
+    
+    // Entry point for "--cli [script...]" (scripts first, then the REPL) and "--script <file...>"
+    public static int run(String[] args) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        KernelShell shell = new KernelShell(new Kernel(), out);
+        try {
+            for (int i = 1; i < args.length && !shell.quit; i++) {
+                shell.source(args[i]);
+            }
+            if (args[0].equals("--cli") && !shell.quit) {
+                shell.repl(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), System.console() != null);
+            }
+        } catch (IOException e) {
+            out.println("error: " + e.getMessage());
+            shell.errors++;
+        }
+        out.flush();
+        return shell.errors == 0 ? 0 : 1;
+    }
+    
+    public void repl(BufferedReader in, boolean interactive) throws IOException {
+        String line;
+        while (!quit) {
+            if (interactive) {
+                out.print("ossim> ");
+                out.flush();
+            }
+            if ((line = in.readLine()) == null) break;
+            execute(line, null, 0);
+            if (interactive) out.flush();
+        }
+    }
+    
+    public void source(String file) throws IOException {
+        if (sourceDepth >= MAX_SOURCE_DEPTH) {
+            throw new IllegalStateException("source nested more than " + MAX_SOURCE_DEPTH + " deep at " + file);
+        }
+        sourceDepth++;
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while (!quit && (line = in.readLine()) != null) {
+                execute(line, file, ++lineNo);
+            }
+        } finally {
+            sourceDepth--;
+        }
+    }
+    
+    // One input line: ';'-separated commands, errors reported with their script position
+    public void execute(String line, String file, int lineNo) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) return;
+        for (String command : trimmed.split(";")) {
+            String[] words = command.trim().split("\\s+");
+            if (words[0].isEmpty()) continue;
+            try {
+                dispatch(words);
+            } catch (IOException | RuntimeException e) {
+                errors++;
+                String message = e.getMessage() != null ? e.getMessage() : e.toString();
+                out.println(file == null ? "error: " + message : "error: " + file + ":" + lineNo + ": " + message);
+            }
+            if (quit) return;
+        }
+    }
+    
+    private void dispatch(String[] w) throws IOException {
+        switch (w[0].toLowerCase()) {
+            case "help":
+                out.println(HELP);
+                break;
+            case "create": {
+                need(w, 5, "create <owner> <priority> <memoryKB> <burst> [arrival]");
+                PCB pcb = kernel.createProcess(w[1], num(w[2]), num(w[3]), num(w[4]), w.length > 5 ? num(w[5]) : (int) kernel.getClock());
+                out.println(pcb);
+                break;
+            }
+            case "destroy": {
+                PCB pcb = process(w);
+                kernel.destroyProcess(pcb);
+                out.println("P" + pcb.getProcessId() + " destroyed");
+                break;
+            }
+            case "suspend": {
+                PCB pcb = process(w);
+                kernel.suspendProcess(pcb);
+                out.println(pcb);
+                break;
+            }
+            case "resume": {
+                PCB pcb = process(w);
+                kernel.resumeProcess(pcb);
+                out.println(pcb);
+                break;
+            }
+            case "block": {
+                PCB pcb = process(w);
+                kernel.blockProcess(pcb);
+                out.println(pcb);
+                break;
+            }
+            case "wakeup": {
+                PCB pcb = process(w);
+                kernel.wakeupProcess(pcb);
+                out.println(pcb);
+                break;
+            }
+            case "priority": {
+                need(w, 3, "priority <pid> <value>");
+                PCB pcb = process(w);
+                kernel.changePriority(pcb, num(w[2]));
+                out.println(pcb);
+                break;
+            }
+            case "fork":
+                out.println(kernel.forkProcess(process(w)));
+                break;
+            case "rt": {
+                need(w, 5, "rt <owner> <wcet> <period> <deadline> [sporadic] [edf|rm]");
+                boolean sporadic = false;
+                RealTimePolicy policy = kernel.getRealTime().getPolicy();
+                for (int i = 5; i < w.length; i++) {
+                    if (w[i].equalsIgnoreCase("sporadic")) sporadic = true;
+                    else policy = RealTimePolicy.valueOf(w[i].toUpperCase());
+                }
+                out.println(kernel.createRealTimeTask(w[1], num(w[2]), num(w[3]), num(w[4]), sporadic, policy));
+                break;
+            }
+            case "group":
+                need(w, 5, "group <path> <weight> <quota|-1> <period>");
+                out.println(kernel.configureGroup(w[1], num(w[2]), num(w[3]), num(w[4])));
+                break;
+            case "schedule":
+                schedule(w);
+                break;
+            case "switchcost":
+                need(w, 5, "switchcost <overheadTicks> <warmupTicks> <decayTicks> <cpus> [affinity]");
+                out.println(kernel.configureContextSwitch(Double.parseDouble(w[1]), Double.parseDouble(w[2]),
+                        Double.parseDouble(w[3]), num(w[4]), w.length > 5 && w[5].equalsIgnoreCase("affinity")));
+                break;
+            case "import":
+                importTrace(w);
+                break;
+            case "replay":
+                replay(w);
+                break;
+            case "faults":
+                faults(w);
+                break;
+            case "reference": {
+                need(w, 3, "reference <trace|scan> <count>");
+                long count = longNum(w[2]);
+                boolean scan = w[1].equalsIgnoreCase("scan");
+                if (!scan && !w[1].equalsIgnoreCase("trace")) throw new IllegalArgumentException("unknown reference pattern '" + w[1] + "'");
+                long faults = kernel.getMinorFaults() + kernel.getMajorFaults();
+                long start = System.nanoTime();
+                for (long i = 0; i < count; i++) {
+                    if (scan) kernel.sequentialScanStep();
+                    else kernel.referenceStep();
+                }
+                out.printf("%d references, %d faults in %.1f ms%n", count,
+                        kernel.getMinorFaults() + kernel.getMajorFaults() - faults, (System.nanoTime() - start) / 1e6);
+                break;
+            }
+            case "write": {
+                need(w, 2, "write <count>");
+                long cow = kernel.getCowFaults();
+                kernel.simulatePageWrites(num(w[1]));
+                out.println((kernel.getCowFaults() - cow) + " copy-on-write faults");
+                break;
+            }
+            case "lru":
+                need(w, 2, "lru <maxPages>");
+                out.println(kernel.applyLRU(num(w[1])));
+                break;
+            case "pagesize":
+                need(w, 2, "pagesize <bytes>");
+                kernel.setPageSize(num(w[1]));
+                out.println("Page size: " + kernel.getPageSize() + " bytes");
+                break;
+            case "frames":
+                need(w, 2, "frames <count>");
+                kernel.setFrameCapacity(num(w[1]));
+                out.println("Frame capacity: " + kernel.getFrameCapacity());
+                break;
+            case "prefetch":
+                need(w, 2, "prefetch <depth>");
+                kernel.setPrefetchDepth(num(w[1]));
+                out.println("Prefetch depth: " + kernel.getPrefetchDepth());
+                break;
+            case "partition":
+                partition(w);
+                break;
+            case "numa":
+                numa(w);
+                break;
+            case "pin":
+                need(w, 3, "pin <pid> <node|-1>");
+                out.println(kernel.pinProcess(process(w).getProcessId(), num(w[2])));
+                break;
+            case "ps":
+                ps(w.length > 1 ? num(w[1]) : Integer.MAX_VALUE);
+                break;
+            case "stats":
+                stats();
+                break;
+            case "metrics":
+                out.print(kernel.getMetrics().toPrometheus());
+                break;
+            case "snapshot":
+                need(w, 3, "snapshot <save|load> <file>");
+                if (w[1].equalsIgnoreCase("save")) {
+                    kernel.snapshot().save(new File(w[2]));
+                    out.println("Snapshot saved to " + w[2]);
+                } else if (w[1].equalsIgnoreCase("load")) {
+                    kernel.restore(KernelSnapshot.load(new File(w[2])));
+                    out.println("Snapshot loaded: " + kernel.getAllProcesses().size() + " processes, clock " + kernel.getClock());
+                } else {
+                    throw new IllegalArgumentException("snapshot <save|load> <file>");
+                }
+                break;
+            case "repeat": {
+                need(w, 3, "repeat <n> <command>");
+                long n = longNum(w[1]);
+                String[] inner = Arrays.copyOfRange(w, 2, w.length);
+                for (long i = 0; i < n && !quit; i++) dispatch(inner);
+                break;
+            }
+            case "source":
+                need(w, 2, "source <file>");
+                source(w[1]);
+                break;
+            case "echo":
+                out.println(String.join(" ", Arrays.copyOfRange(w, 1, w.length)));
+                break;
+            case "quit":
+            case "exit":
+                quit = true;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown command '" + w[0] + "' (try help)");
+        }
+    }
+    
+    private Runnable scheduler(String name) {
+        switch (name.toLowerCase()) {
+            case "fcfs": return kernel::scheduleFCFS;
+            case "sjf": return kernel::scheduleSJF;
+            case "rr": return kernel::scheduleRoundRobin;
+            case "edf": return kernel::scheduleEDF;
+            case "rm": return kernel::scheduleRM;
+            case "fair": return kernel::scheduleFairShare;
+            default: throw new IllegalArgumentException("unknown scheduler '" + name + "'");
+        }
+    }
+    
+    private void schedule(String[] w) {
+        need(w, 2, "schedule <fcfs|sjf|rr|edf|rm|fair> [steps]");
+        Runnable step = scheduler(w[1]);
+        long steps = w.length > 2 ? longNum(w[2]) : 1;
+        long start = System.nanoTime();
+        for (long i = 0; i < steps; i++) step.run();
+        PCB running = kernel.getRunningProcess();
+        out.printf("%d %s steps in %.1f ms, clock %d, running %s%n", steps, w[1].toUpperCase(),
+                (System.nanoTime() - start) / 1e6, kernel.getClock(), running == null ? "none" : "P" + running.getProcessId());
+    }
+    
+    private void importTrace(String[] w) throws IOException {
+        need(w, 3, "import <proc|sched> <file> [tickMicros]");
+        long start = System.nanoTime();
+        TraceImport imported;
+        switch (w[1].toLowerCase()) {
+            case "proc":
+                imported = TraceImporter.importProcSamples(Paths.get(w[2]));
+                break;
+            case "sched":
+                imported = TraceImporter.importPerfSched(Paths.get(w[2]), w.length > 3 ? longNum(w[3]) : 1000);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown trace format '" + w[1] + "'");
+        }
+        trace = imported.processes;
+        long work = 0;
+        for (TraceProcess t : trace) work += t.burst;
+        out.printf("Imported %d processes, %d ticks of CPU, last arrival %d, %d malformed lines, in %.1f ms%n", trace.size(), work,
+                trace.get(trace.size() - 1).arrival, imported.malformed, (System.nanoTime() - start) / 1e6);
+    }
+    
+    private void replay(String[] w) {
+        need(w, 2, "replay <rr|edf|rm|fair> [maxSteps]");
+        if (trace == null) throw new IllegalStateException("no trace imported (use import first)");
+        if (w[1].equalsIgnoreCase("fcfs") || w[1].equalsIgnoreCase("sjf")) {
+            throw new IllegalArgumentException(w[1].toUpperCase() + " only dispatches and never runs bursts down; replay with rr, edf, rm or fair");
+        }
+        TraceReplay replay = new TraceReplay(kernel, trace, scheduler(w[1]));
+        long maxSteps = w.length > 2 ? longNum(w[2]) : Long.MAX_VALUE;
+        long steps = 0;
+        long start = System.nanoTime();
+        while (steps < maxSteps && replay.step()) steps++;
+        out.printf("Replayed %d of %d processes in %d %s steps (%.1f ms), clock %d%n", replay.getArrived(), replay.getTotal(),
+                steps, w[1].toUpperCase(), (System.nanoTime() - start) / 1e6, kernel.getClock());
+    }
+    
+    private void faults(String[] w) {
+        need(w, 2, "faults <file> [maxReferences]");
+        long maxReferences = w.length > 2 ? longNum(w[2]) : Long.MAX_VALUE;
+        long faults = kernel.getMinorFaults() + kernel.getMajorFaults();
+        long start = System.nanoTime();
+        PageFaultStream stream = new PageFaultStream(kernel, Paths.get(w[1]));
+        try {
+            while (stream.getReferences() < maxReferences && stream.step()) { }
+        } finally {
+            stream.close();
+        }
+        if (stream.getError() != null) throw new IllegalStateException(stream.getError());
+        out.printf("%d references from %d processes, %d faults, %d malformed lines, in %.1f ms%n", stream.getReferences(),
+                stream.getProcessCount(), kernel.getMinorFaults() + kernel.getMajorFaults() - faults, stream.getMalformed(),
+                (System.nanoTime() - start) / 1e6);
+    }
+    
+    private void partition(String[] w) {
+        need(w, 2, "partition alloc <pid> | free <id> | compact | reset | show");
+        switch (w[1].toLowerCase()) {
+            case "alloc":
+                need(w, 3, "partition alloc <pid>");
+                out.println(kernel.allocateFixedPartition(process(w[2])));
+                break;
+            case "free":
+                need(w, 3, "partition free <id>");
+                out.println(kernel.deallocateFixedPartition(num(w[2])));
+                break;
+            case "compact":
+                out.println(kernel.compactMemory());
+                break;
+            case "reset":
+                kernel.resetPartitions();
+                out.println("All partitions reset");
+                break;
+            case "show":
+                for (Partition p : kernel.getPartitions()) {
+                    out.printf("  %-4d %5d-%-5d %5d KB  %s%n", p.getId(), p.getStartAddress(), p.getEndAddress(), p.getSize(),
+                            p.isAllocated() ? "P" + p.getProcessId() : "free");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown partition command '" + w[1] + "'");
         }
     }
     
-    public String applyLRU(int maxPages) {
-        if (pageTable.size() <= maxPages) {
-            return "No pages need to be replaced. Current pages: " + pageTable.size() + ", Max allowed: " + maxPages;
+    private void numa(String[] w) {
+        if (w.length > 2 && w[1].equalsIgnoreCase("policy")) {
+            NumaPolicy policy = NumaPolicy.valueOf(w[2].toUpperCase());
+            boolean migrate = w.length > 3 && w[3].equalsIgnoreCase("migrate");
+            kernel.getNuma().setPolicy(policy);
+            kernel.getNuma().setMigration(migrate);
+            out.println("NUMA policy " + policy + (migrate ? " with migration" : ""));
+            return;
         }
-        
-        // Find the least recently used page
-        Page lruPage = null;
-        int lruPageNum = -1;
-        long oldestTime = Long.MAX_VALUE;
-        
-        for (Map.Entry<Integer, Page> entry : pageTable.entrySet()) {
-            if (entry.getValue().getLastAccessed() < oldestTime) {
-                oldestTime = entry.getValue().getLastAccessed();
-                lruPage = entry.getValue();
-                lruPageNum = entry.getKey();
+        if (w.length > 1 && w[1].equalsIgnoreCase("bind")) {
+            need(w, 3, "numa bind <node[,node..]>");
+            BitSet nodes = new BitSet();
+            for (String n : w[2].split(",")) {
+                if (num(n) < 0) throw new IllegalArgumentException("no node " + n);
+                nodes.set(num(n));
             }
+            out.println(kernel.bindNuma(nodes));
+            return;
         }
-        
-        if (lruPage != null) {
-            pageTable.remove(lruPageNum);
-            return String.format("Removed Page #%d (Process P%d) - Least Recently Used\nRemaining pages: %d", 
-                    lruPageNum, lruPage.getProcessId(), pageTable.size());
-        }
-        
-        return "No pages to remove";
+        need(w, 5, "numa <nodes> <frames[,frames..]> <localNs[,..]> <remoteNs[,..]>");
+        int nodes = num(w[1]);
+        if (nodes <= 0) throw new IllegalArgumentException("node count must be positive");
+        out.println(kernel.configureNuma(NumaTopology.perNode(w[2], nodes), NumaTopology.perNode(w[3], nodes), NumaTopology.perNode(w[4], nodes)));
     }
     
-    public void simulatePageAccess() {
-        // Simulate random page accesses to create different access times
-        if (!pageTable.isEmpty()) {
-            List<Integer> pageNums = new ArrayList<>(pageTable.keySet());
-            Random rand = new Random();
-            for (int i = 0; i < 3; i++) {
-                int randomPage = pageNums.get(rand.nextInt(pageNums.size()));
-                try {
-                    Thread.sleep(10); // Small delay to create time difference
-                } catch (InterruptedException e) {}
-                pageTable.get(randomPage).access();
-            }
+    private void ps(int limit) {
+        int shown = 0;
+        for (PCB p : kernel.getAllProcesses()) {
+            if (shown++ >= limit) break;
+            out.printf("  P%d %s owner=%s pri=%d mem=%dKB burst=%d remaining=%d pages=%d%n", p.getProcessId(), p.getState(),
+                    p.getOwner(), p.getPriority(), p.getMemoryRequirement(), p.getBurstTime(), p.getRemainingTime(),
+                    p.getPageNumbers().size());
         }
+        out.println(kernel.getAllProcesses().size() + " processes");
     }
     
-    // Getters
-    public List<PCB> getAllProcesses() { return allProcesses; }
-    public Queue<PCB> getReadyQueue() { return readyQueue; }
-    public Queue<PCB> getBlockedQueue() { return blockedQueue; }
-    public PCB getRunningProcess() { return runningProcess; }
-    public int getPageSize() { return pageSize; }
-    public void setPageSize(int size) { this.pageSize = size; }
-    public Map<Integer, Page> getPageTable() { return pageTable; }
-    public Semaphore getMutex() { return mutex; }
-}
-
-// Page Class
-class Page {
-    private int pageNumber;
-    private int processId;
-    private long lastAccessed;
-    private int accessCount;
+    private void stats() {
+        PCB running = kernel.getRunningProcess();
+        out.printf("clock %d   processes %d   ready %d   blocked %d   running %s%n", kernel.getClock(),
+                kernel.getAllProcesses().size(), kernel.getReadyQueue().size(), kernel.getBlockedQueue().size(),
+                running == null ? "none" : "P" + running.getProcessId());
+        out.printf("pages resident %d   swapped %d   faults %d zero-fill / %d swap   COW faults %d%n",
+                kernel.getPageTable().size(), kernel.getSwappedPages().size(), kernel.getMinorFaults(),
+                kernel.getMajorFaults(), kernel.getCowFaults());
+        RealTimeScheduler rt = kernel.getRealTime();
+        out.printf("real-time tasks %d   U %.3f   jobs %d   deadline misses %d%n", rt.getTasks().size(),
+                rt.getUtilisation(), rt.getJobsReleased(), rt.getDeadlineMisses());
+        if (rt.getPolicyWarning() != null) out.println("warning: not schedulable under " + rt.getPolicy() + ": " + rt.getPolicyWarning());
+        ContextSwitchModel cs = kernel.getSwitchModel();
+        out.printf("context switches %d   migrations %d   lost %d of %d busy ticks (%.2f%%)%n", cs.getSwitches(),
+                cs.getMigrations(), cs.getLostTicks(), cs.getBusyTicks(), 100 * cs.getLostFraction());
+        NumaTopology numa = kernel.getNuma();
+        out.printf("NUMA remote %.1f%%   effective latency %.1f ns   migrations %d   spills %d   bind reclaims %d%n",
+                100 * numa.getRemoteRatio(), numa.getEffectiveLatency(), numa.getMigrations(), numa.getSpills(), numa.getReclaims());
+        CompactionEngine compactor = kernel.getCompactor();
+        out.printf("allocations %d (%d first fit, %d after compaction)   compacted %d KB%n", kernel.getAllocationAttempts(),
+                kernel.getFirstFitAllocations(), kernel.getCompactedAllocations(), compactor.getMovedKb());
+    }
     
-    public Page(int pageNumber, int processId) {
-        this.pageNumber = pageNumber;
-        this.processId = processId;
-        this.lastAccessed = System.currentTimeMillis();
-        this.accessCount = 0;
+    private PCB process(String[] w) {
+        need(w, 2, w[0] + " <pid>");
+        return process(w[1]);
     }
     
-    public int getPageNumber() { return pageNumber; }
-    public int getProcessId() { return processId; }
-    public long getLastAccessed() { return lastAccessed; }
-    public int getAccessCount() { return accessCount; }
-    public void access() { 
-        lastAccessed = System.currentTimeMillis(); 
-        accessCount++;
+    private PCB process(String pid) {
+        PCB pcb = kernel.getProcess(num(pid.startsWith("P") || pid.startsWith("p") ? pid.substring(1) : pid));
+        if (pcb == null) throw new IllegalArgumentException("no process " + pid);
+        return pcb;
+    }
+    
+    private static void need(String[] w, int words, String usage) {
+        if (w.length < words) throw new IllegalArgumentException("usage: " + usage);
+    }
+    
+    private static int num(String s) {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + s);
+        }
+    }
+    
+    private static long longNum(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + s);
+        }
     }
+    
+    public int getErrors() { return errors; }
 }
 
 // Process Management Window
 class ProcessManagementWindow extends JFrame {
     private Kernel kernel;
+    private SimulationExecutor executor;
     private JTextArea displayArea;
+    private JLabel statusLabel;
     
-    public ProcessManagementWindow(Kernel kernel) {
+    public ProcessManagementWindow(Kernel kernel, SimulationExecutor executor) {
         this.kernel = kernel;
+        this.executor = executor;
         setTitle("Process Management");
         setSize(700, 600);
         setLayout(new BorderLayout(10, 10));
         
         // Button Panel
-        JPanel btnPanel = new JPanel(new GridLayout(5, 2, 5, 5));
+        JPanel btnPanel = new JPanel(new GridLayout(13, 2, 5, 5));
         btnPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         
         addButton(btnPanel, "Create Process", e -> createProcess());
@@ -459,6 +5106,19 @@ class ProcessManagementWindow extends JFrame {
         addButton(btnPanel, "Schedule FCFS", e -> scheduleFCFS());
         addButton(btnPanel, "Schedule SJF", e -> scheduleSJF());
         addButton(btnPanel, "Schedule RR", e -> scheduleRoundRobin());
+        addButton(btnPanel, "Schedule EDF", e -> executor.submit(() -> kernel.scheduleEDF()));
+        addButton(btnPanel, "Schedule RM", e -> executor.submit(() -> kernel.scheduleRM()));
+        addButton(btnPanel, "Create RT Tasks...", e -> createRealTimeTasks());
+        addButton(btnPanel, "Schedule Fair Share", e -> executor.submit(() -> kernel.scheduleFairShare()));
+        addButton(btnPanel, "Configure Group...", e -> configureGroup());
+        addButton(btnPanel, "Run Scheduler Steps...", e -> runSchedulerSteps());
+        addButton(btnPanel, "Pause Run", e -> executor.pause());
+        addButton(btnPanel, "Resume Run", e -> executor.resume());
+        addButton(btnPanel, "Cancel Run", e -> executor.cancel());
+        addButton(btnPanel, "Timeline & Metrics", e -> new TimelineWindow(kernel, executor));
+        addButton(btnPanel, "Fork Process", e -> forkProcess());
+        addButton(btnPanel, "Replay Trace...", e -> replayTrace());
+        addButton(btnPanel, "Context Switch Costs...", e -> configureContextSwitch());
         
         // Display Area
         displayArea = new JTextArea();
@@ -466,10 +5126,20 @@ class ProcessManagementWindow extends JFrame {
         displayArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
         JScrollPane scroll = new JScrollPane(displayArea);
         
+        statusLabel = new JLabel(executor.getStatus());
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 10, 5, 10));
+        
         add(btnPanel, BorderLayout.NORTH);
         add(scroll, BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
         
-        updateDisplay();
+        Runnable refresh = this::updateDisplay;
+        executor.addRefreshListener(refresh);
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                executor.removeRefreshListener(refresh);
+            }
+        });
         setLocationRelativeTo(null);
         setVisible(true);
     }
@@ -564,10 +5234,10 @@ class ProcessManagementWindow extends JFrame {
                             arrivalTime = startTime * i;
                         }
                         
-                        kernel.createProcess("Process" + (i + 1), priority, memory, burst, arrivalTime);
+                        String owner = "Process" + (i + 1);
+                        executor.submit(() -> kernel.createProcess(owner, priority, memory, burst, arrivalTime));
                     }
                     
-                    updateDisplay();
                     dialog.dispose();
                     JOptionPane.showMessageDialog(this, numProcesses + " processes created successfully!");
                 } catch (NumberFormatException ex) {
@@ -592,40 +5262,42 @@ class ProcessManagementWindow extends JFrame {
     private void destroyProcess() {
         PCB pcb = selectProcess("Select process to destroy");
         if (pcb != null) {
-            kernel.destroyProcess(pcb);
-            updateDisplay();
+            executor.submit(() -> kernel.destroyProcess(pcb));
         }
     }
     
     private void suspendProcess() {
         PCB pcb = selectProcess("Select process to suspend");
         if (pcb != null) {
-            kernel.suspendProcess(pcb);
-            updateDisplay();
+            executor.submit(() -> kernel.suspendProcess(pcb));
         }
     }
     
     private void resumeProcess() {
         PCB pcb = selectProcess("Select process to resume");
         if (pcb != null) {
-            kernel.resumeProcess(pcb);
-            updateDisplay();
+            executor.submit(() -> kernel.resumeProcess(pcb));
         }
     }
     
     private void blockProcess() {
         PCB pcb = selectProcess("Select process to block");
         if (pcb != null) {
-            kernel.blockProcess(pcb);
-            updateDisplay();
+            executor.submit(() -> kernel.blockProcess(pcb));
         }
     }
     
     private void wakeupProcess() {
         PCB pcb = selectProcess("Select process to wakeup");
         if (pcb != null) {
-            kernel.wakeupProcess(pcb);
-            updateDisplay();
+            executor.submit(() -> kernel.wakeupProcess(pcb));
+        }
+    }
+    
+    private void forkProcess() {
+        PCB pcb = selectProcess("Select process to fork");
+        if (pcb != null) {
+            executor.submit(() -> kernel.forkProcess(pcb));
         }
     }
     
@@ -633,33 +5305,225 @@ class ProcessManagementWindow extends JFrame {
         PCB pcb = selectProcess("Select process");
         if (pcb != null) {
             int newPri = Integer.parseInt(JOptionPane.showInputDialog("New priority:", pcb.getPriority()));
-            kernel.changePriority(pcb, newPri);
-            updateDisplay();
+            executor.submit(() -> kernel.changePriority(pcb, newPri));
         }
     }
     
     private void scheduleFCFS() {
-        kernel.scheduleFCFS();
-        updateDisplay();
+        executor.submit(() -> kernel.scheduleFCFS());
     }
     
     private void scheduleSJF() {
-        kernel.scheduleSJF();
-        updateDisplay();
+        executor.submit(() -> kernel.scheduleSJF());
     }
     
     private void scheduleRoundRobin() {
-        kernel.scheduleRoundRobin();
-        updateDisplay();
+        executor.submit(() -> kernel.scheduleRoundRobin());
+    }
+    
+    private void runSchedulerSteps() {
+        if (executor.isRunning()) {
+            JOptionPane.showMessageDialog(this, "A run is already in progress: " + executor.getStatus());
+            return;
+        }
+        String[] schedulers = {"RR", "FCFS", "SJF", "EDF", "RM", "Fair Share"};
+        JComboBox<String> schedulerBox = new JComboBox<>(schedulers);
+        JTextField stepsField = new JTextField("1000000");
+        JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+        panel.add(new JLabel("Scheduler:"));
+        panel.add(schedulerBox);
+        panel.add(new JLabel("Steps:"));
+        panel.add(stepsField);
+        if (JOptionPane.showConfirmDialog(this, panel, "Run Scheduler Steps", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        try {
+            long steps = Long.parseLong(stepsField.getText().trim());
+            if (steps <= 0) {
+                JOptionPane.showMessageDialog(this, "Number of steps must be positive!");
+                return;
+            }
+            String name = (String) schedulerBox.getSelectedItem();
+            Runnable step;
+            switch (name) {
+                case "FCFS": step = kernel::scheduleFCFS; break;
+                case "SJF": step = kernel::scheduleSJF; break;
+                case "EDF": step = kernel::scheduleEDF; break;
+                case "RM": step = kernel::scheduleRM; break;
+                case "Fair Share": step = kernel::scheduleFairShare; break;
+                default: step = kernel::scheduleRoundRobin;
+            }
+            executor.runSteps(name, steps, step);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid number of steps!");
+        }
+    }
+    
+    private void configureContextSwitch() {
+        ContextSwitchModel cs = executor.read(kernel::getSwitchModel);
+        JTextField switchField = new JTextField(String.valueOf(cs.getSwitchCost()));
+        JTextField warmupField = new JTextField(String.valueOf(cs.getWarmupCost()));
+        JTextField decayField = new JTextField(String.valueOf(cs.getCacheDecay()));
+        JTextField cpusField = new JTextField(String.valueOf(cs.getCpus()));
+        JCheckBox affinityBox = new JCheckBox("Keep processes on their last CPU", cs.isAffinity());
+        JPanel panel = new JPanel(new GridLayout(5, 2, 5, 5));
+        panel.add(new JLabel("Switch Overhead (ticks):"));
+        panel.add(switchField);
+        panel.add(new JLabel("Cold Warm-up (ticks):"));
+        panel.add(warmupField);
+        panel.add(new JLabel("Cache Decay (ticks):"));
+        panel.add(decayField);
+        panel.add(new JLabel("CPUs:"));
+        panel.add(cpusField);
+        panel.add(new JLabel("Affinity:"));
+        panel.add(affinityBox);
+        if (JOptionPane.showConfirmDialog(this, panel, "Context Switch Costs", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        try {
+            double switchCost = Double.parseDouble(switchField.getText().trim());
+            double warmupCost = Double.parseDouble(warmupField.getText().trim());
+            double decay = Double.parseDouble(decayField.getText().trim());
+            int cpus = Integer.parseInt(cpusField.getText().trim());
+            boolean affinity = affinityBox.isSelected();
+            executor.submit(() -> kernel.configureContextSwitch(switchCost, warmupCost, decay, cpus, affinity),
+                    message -> JOptionPane.showMessageDialog(this, message));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid number!");
+        }
+    }
+    
+    // Import a captured trace (parsed off the EDT) and replay it as a long run
+    private void replayTrace() {
+        if (executor.isRunning()) {
+            JOptionPane.showMessageDialog(this, "A run is already in progress: " + executor.getStatus());
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path file = chooser.getSelectedFile().toPath();
+        String[] formats = {"/proc samples", "perf sched script", "Page-fault trace"};
+        JComboBox<String> formatBox = new JComboBox<>(formats);
+        JComboBox<String> schedulerBox = new JComboBox<>(new String[] {"RR", "EDF", "RM", "Fair Share"});
+        JTextField tickField = new JTextField("1000");
+        JPanel panel = new JPanel(new GridLayout(3, 2, 5, 5));
+        panel.add(new JLabel("Format:"));
+        panel.add(formatBox);
+        panel.add(new JLabel("Scheduler:"));
+        panel.add(schedulerBox);
+        panel.add(new JLabel("Microseconds per Tick (perf):"));
+        panel.add(tickField);
+        if (JOptionPane.showConfirmDialog(this, panel, "Replay Trace", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        long tickMicros;
+        try {
+            tickMicros = Long.parseLong(tickField.getText().trim());
+            if (tickMicros <= 0) throw new NumberFormatException();
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Microseconds per tick must be a positive number!");
+            return;
+        }
+        String format = (String) formatBox.getSelectedItem();
+        if (format.equals("Page-fault trace")) {
+            executor.submit(() -> new PageFaultStream(kernel, file),
+                    stream -> executor.runSteps("Fault Replay", Long.MAX_VALUE, stream::step, () -> {
+                        stream.close(); // also when the run is cancelled
+                        if (stream.getError() != null) {
+                            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, "Fault replay failed: " + stream.getError()));
+                        }
+                    }));
+            return;
+        }
+        Runnable scheduler;
+        switch ((String) schedulerBox.getSelectedItem()) {
+            case "EDF": scheduler = kernel::scheduleEDF; break;
+            case "RM": scheduler = kernel::scheduleRM; break;
+            case "Fair Share": scheduler = kernel::scheduleFairShare; break;
+            default: scheduler = kernel::scheduleRoundRobin;
+        }
+        // Parse without holding the kernel; only building the replay needs it
+        executor.prepareRun("Trace Import", () -> format.equals("/proc samples") ? TraceImporter.importProcSamples(file)
+                : TraceImporter.importPerfSched(file, tickMicros), imported -> {
+            executor.submit(() -> new TraceReplay(kernel, imported.processes, scheduler),
+                    replay -> executor.runSteps("Trace Replay", Long.MAX_VALUE, replay::step));
+            if (imported.malformed > 0) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                        String.format("Imported %d processes; %d malformed lines were skipped.", imported.processes.size(), imported.malformed)));
+            }
+        }, message -> JOptionPane.showMessageDialog(this, "Could not import trace: " + message));
+    }
+    
+    private void configureGroup() {
+        JTextField pathField = new JTextField("tenant/team");
+        JTextField weightField = new JTextField(String.valueOf(FairShareEntity.DEFAULT_WEIGHT));
+        JTextField quotaField = new JTextField("-1");
+        JTextField periodField = new JTextField("100");
+        JPanel panel = new JPanel(new GridLayout(4, 2, 5, 5));
+        panel.add(new JLabel("Group Path (owner prefix):"));
+        panel.add(pathField);
+        panel.add(new JLabel("Weight:"));
+        panel.add(weightField);
+        panel.add(new JLabel("Quota (ticks, -1 = unlimited):"));
+        panel.add(quotaField);
+        panel.add(new JLabel("Period (ticks):"));
+        panel.add(periodField);
+        if (JOptionPane.showConfirmDialog(this, panel, "Configure Group (Fair Share scheduler)", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        try {
+            String path = pathField.getText().trim();
+            int weight = Integer.parseInt(weightField.getText().trim());
+            int quota = Integer.parseInt(quotaField.getText().trim());
+            int period = Integer.parseInt(periodField.getText().trim());
+            executor.submit(() -> kernel.configureGroup(path, weight, quota, period),
+                    message -> JOptionPane.showMessageDialog(this, message));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid input! Please enter valid numbers.");
+        }
+    }
+    
+    private void createRealTimeTasks() {
+        JTextField countField = new JTextField("1");
+        JTextField wcetField = new JTextField("2");
+        JTextField periodField = new JTextField("10");
+        JTextField deadlineField = new JTextField("10");
+        JCheckBox sporadicBox = new JCheckBox("Sporadic (period is the minimum inter-arrival)");
+        JComboBox<RealTimePolicy> policyBox = new JComboBox<>(RealTimePolicy.values());
+        policyBox.setSelectedItem(executor.read(() -> kernel.getRealTime().getPolicy()));
+        JPanel panel = new JPanel(new GridLayout(6, 2, 5, 5));
+        panel.add(new JLabel("Number of tasks:"));
+        panel.add(countField);
+        panel.add(new JLabel("WCET (ticks):"));
+        panel.add(wcetField);
+        panel.add(new JLabel("Period (ticks):"));
+        panel.add(periodField);
+        panel.add(new JLabel("Relative Deadline (ticks):"));
+        panel.add(deadlineField);
+        panel.add(new JLabel("Admission Test For:"));
+        panel.add(policyBox);
+        panel.add(new JLabel());
+        panel.add(sporadicBox);
+        if (JOptionPane.showConfirmDialog(this, panel, "Create Real-Time Tasks", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        try {
+            int count = Integer.parseInt(countField.getText().trim());
+            int wcet = Integer.parseInt(wcetField.getText().trim());
+            int period = Integer.parseInt(periodField.getText().trim());
+            int deadline = Integer.parseInt(deadlineField.getText().trim());
+            boolean sporadic = sporadicBox.isSelected();
+            RealTimePolicy policy = (RealTimePolicy) policyBox.getSelectedItem();
+            executor.submit(() -> {
+                int admitted = 0;
+                String last = "";
+                for (int i = 0; i < count; i++) {
+                    last = kernel.createRealTimeTask("RT" + (i + 1), wcet, period, deadline, sporadic, policy);
+                    if (last.startsWith("Task P")) admitted++;
+                }
+                return admitted + " of " + count + " tasks admitted.\n" + last;
+            }, message -> JOptionPane.showMessageDialog(this, message, "Admission", JOptionPane.INFORMATION_MESSAGE));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid input! Please enter valid numbers.");
+        }
     }
     
     private PCB selectProcess(String title) {
-        List<PCB> processes = kernel.getAllProcesses();
-        if (processes.isEmpty()) {
+        Object[] options = executor.read(() -> kernel.getAllProcesses().toArray());
+        if (options.length == 0) {
             JOptionPane.showMessageDialog(this, "No processes available");
             return null;
         }
-        Object[] options = processes.toArray();
         return (PCB) JOptionPane.showInputDialog(this, title, "Select Process",
                 JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
     }
@@ -685,25 +5549,74 @@ class ProcessManagementWindow extends JFrame {
             sb.append("  ").append(p).append("\n");
         }
         
+        RealTimeScheduler rt = kernel.getRealTime();
+        if (!rt.getTasks().isEmpty()) {
+            sb.append(String.format("\nREAL-TIME (%s, %d tasks):\n", rt.getPolicy(), rt.getTasks().size()));
+            sb.append(String.format("  U = %.3f   Density = %.3f   Liu-Layland Bound = %.3f   Hyperbolic Product = %.3f\n",
+                    rt.getUtilisation(), rt.getDensity(), rt.getLiuLaylandBound(), rt.getHyperbolicProduct()));
+            sb.append(String.format("  Jobs: %d released, %d completed   Deadline Misses: %d   Avg Start Latency: %.1f   Max Start Jitter: %d\n",
+                    rt.getJobsReleased(), rt.getJobsCompleted(), rt.getDeadlineMisses(),
+                    rt.getAverageStartLatency(), rt.getMaxStartJitter()));
+            if (rt.getPolicyWarning() != null) {
+                sb.append("  Warning: not schedulable under " + rt.getPolicy() + ": " + rt.getPolicyWarning() + "\n");
+            }
+        }
+        
+        FairShareScheduler fs = kernel.getFairShare();
+        long fsTicks = fs.getRoot().ticks;
+        if (fsTicks > 0) {
+            fs.updateTargets();
+            // Groups furthest from their target first
+            PriorityQueue<FairShareGroup> worst = new PriorityQueue<>(
+                    Comparator.comparingDouble(g -> Math.abs((double) g.ticks / fsTicks - g.target)));
+            for (FairShareGroup g : fs.getGroups()) {
+                if (g == fs.getRoot()) continue;
+                worst.add(g);
+                if (worst.size() > 10) worst.poll();
+            }
+            List<FairShareGroup> shown = new ArrayList<>(worst);
+            shown.sort(Comparator.comparingDouble((FairShareGroup g) -> Math.abs((double) g.ticks / fsTicks - g.target)).reversed());
+            sb.append(String.format("\nFAIR-SHARE GROUPS (%d groups, %d ticks, slice %d):\n",
+                    fs.getGroups().size() - 1, fsTicks, fs.getSlice()));
+            for (FairShareGroup g : shown) {
+                sb.append(String.format("  %-20s W:%-5d Quota:%-9s Share:%6.2f%%  Target:%6.2f%%  Throttled:%d%s\n",
+                        g.path, g.weight, g.quota < 0 ? "none" : g.quota + "/" + g.period,
+                        100.0 * g.ticks / fsTicks, 100.0 * g.target, g.throttles, g.throttled ? " (now)" : ""));
+            }
+        }
+        
+        ContextSwitchModel cs = kernel.getSwitchModel();
+        if (cs.getSwitches() > 0) {
+            sb.append(String.format("\nCONTEXT SWITCHING (%d CPUs, affinity %s):\n", cs.getCpus(), cs.isAffinity() ? "on" : "off"));
+            sb.append(String.format("  Switches: %d, Migrations: %d, Overhead: %.1f ticks switching + %.1f ticks warm-up\n",
+                    cs.getSwitches(), cs.getMigrations(), cs.getSwitchTicks(), cs.getWarmupTicks()));
+            sb.append(String.format("  Throughput Lost: %d of %d busy ticks (%.2f%%)\n",
+                    cs.getLostTicks(), cs.getBusyTicks(), 100 * cs.getLostFraction()));
+        }
+        
         sb.append("\nALL PROCESSES:\n");
         for (PCB p : kernel.getAllProcesses()) {
-            sb.append(String.format("  P%d: %s, Owner:%s, Priority:%d, Memory:%dKB, Burst:%d, AT:%d, Pages:%d\n",
+            sb.append(String.format("  P%d: %s, Owner:%s, Priority:%d, Memory:%dKB, Burst:%d, AT:%d, Pages:%d%s\n",
                     p.getProcessId(), p.getState(), p.getOwner(), p.getPriority(),
-                    p.getMemoryRequirement(), p.getBurstTime(), p.getArrivalTime(), p.getPageNumbers().size()));
+                    p.getMemoryRequirement(), p.getBurstTime(), p.getArrivalTime(), p.getPageNumbers().size(),
+                    p.getParentId() < 0 ? "" : ", Parent:P" + p.getParentId()));
         }
         
         displayArea.setText(sb.toString());
+        statusLabel.setText(executor.getStatus());
     }
 }
 
 // Memory Management Window
 class MemoryManagementWindow extends JFrame {
     private Kernel kernel;
+    private SimulationExecutor executor;
     private JTextArea displayArea;
     private JTextField maxPagesField;
     
-    public MemoryManagementWindow(Kernel kernel) {
+    public MemoryManagementWindow(Kernel kernel, SimulationExecutor executor) {
         this.kernel = kernel;
+        this.executor = executor;
         setTitle("Memory Management");
         setSize(700, 600);
         setLayout(new BorderLayout(10, 10));
@@ -711,13 +5624,19 @@ class MemoryManagementWindow extends JFrame {
         JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
         btnPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
         
-        addButton(btnPanel, "Refresh Display", e -> updateDisplay());
+        addButton(btnPanel, "Refresh Display", e -> executor.requestRefresh());
         addButton(btnPanel, "Fixed Partitioning", e -> showFixedPartitioning());
-        addButton(btnPanel, "Simulate Page Access", e -> { 
-            kernel.simulatePageAccess(); 
-            updateDisplay(); 
-            JOptionPane.showMessageDialog(this, "Simulated random page accesses!");
-        });
+        addButton(btnPanel, "Simulate Page Access", e -> executor.submit(() -> {
+            kernel.simulatePageAccess();
+            return null;
+        }, ignored -> JOptionPane.showMessageDialog(this, "Simulated random page accesses!")));
+        addButton(btnPanel, "Run Reference Trace...", e -> runTrace("Trace", kernel::referenceStep));
+        addButton(btnPanel, "Run Sequential Scan...", e -> runTrace("Scan", kernel::sequentialScanStep));
+        addButton(btnPanel, "Simulate Page Writes", e -> executor.submit(() -> {
+            long before = kernel.getCowFaults();
+            kernel.simulatePageWrites(10);
+            return kernel.getCowFaults() - before;
+        }, faults -> JOptionPane.showMessageDialog(this, "Simulated 10 page writes (" + faults + " copy-on-write faults)")));
         
         btnPanel.add(new JLabel("  Max Pages:"));
         maxPagesField = new JTextField("10", 5);
@@ -728,11 +5647,12 @@ class MemoryManagementWindow extends JFrame {
         lruBtn.setFocusPainted(false);
         lruBtn.addActionListener(e -> applyLRU());
         btnPanel.add(lruBtn);
-        addButton(btnPanel, "Clear All Pages", e -> { 
-            kernel.getPageTable().clear(); 
-            updateDisplay();
-            JOptionPane.showMessageDialog(this, "All pages cleared!");
-        });
+        addButton(btnPanel, "Clear All Pages", e -> executor.submit(() -> {
+            kernel.clearPages();
+            return null;
+        }, ignored -> JOptionPane.showMessageDialog(this, "All pages cleared!")));
+        addButton(btnPanel, "NUMA Settings...", e -> configureNuma());
+        addButton(btnPanel, "Pin Process...", e -> pinProcess());
         
         displayArea = new JTextArea();
         displayArea.setEditable(false);
@@ -742,7 +5662,13 @@ class MemoryManagementWindow extends JFrame {
         add(btnPanel, BorderLayout.NORTH);
         add(new JScrollPane(displayArea), BorderLayout.CENTER);
         
-        updateDisplay();
+        Runnable refresh = this::updateDisplay;
+        executor.addRefreshListener(refresh);
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                executor.removeRefreshListener(refresh);
+            }
+        });
         setLocationRelativeTo(null);
         setVisible(true);
     }
@@ -755,12 +5681,131 @@ class MemoryManagementWindow extends JFrame {
         panel.add(btn);
     }
     
+    private void runTrace(String name, Runnable step) {
+        if (executor.isRunning()) {
+            JOptionPane.showMessageDialog(this, "A run is already in progress: " + executor.getStatus());
+            return;
+        }
+        String input = JOptionPane.showInputDialog(this, "Number of page references to simulate:", "1000000");
+        if (input == null || input.trim().isEmpty()) return;
+        try {
+            long steps = Long.parseLong(input.trim());
+            if (steps <= 0) {
+                JOptionPane.showMessageDialog(this, "Number of references must be positive!");
+                return;
+            }
+            executor.runSteps(name, steps, step);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid number of references!");
+        }
+    }
+    
+    private void configureNuma() {
+        NumaTopology numa = executor.read(kernel::getNuma);
+        NumaNode[] current = numa.getNodes();
+        int[] oldCapacities = new int[current.length];
+        int[] oldLocal = new int[current.length];
+        int[] oldRemote = new int[current.length];
+        for (NumaNode n : current) {
+            oldCapacities[n.id] = n.capacity;
+            oldLocal[n.id] = n.localLatency;
+            oldRemote[n.id] = n.remoteLatency;
+        }
+        BitSet oldBind = numa.getBindNodes();
+        JTextField nodesField = new JTextField(String.valueOf(current.length));
+        JTextField capacityField = new JTextField(NumaTopology.join(oldCapacities));
+        JTextField localField = new JTextField(NumaTopology.join(oldLocal));
+        JTextField remoteField = new JTextField(NumaTopology.join(oldRemote));
+        JTextField bindField = new JTextField(NumaTopology.join(oldBind.stream().toArray()));
+        JComboBox<NumaPolicy> policyBox = new JComboBox<>(NumaPolicy.values());
+        policyBox.setSelectedItem(numa.getPolicy());
+        JCheckBox migrationBox = new JCheckBox("Migrate pages toward their main accessor", numa.isMigration());
+        JTextField thresholdField = new JTextField(String.valueOf(numa.getMigrationThreshold()));
+        JPanel panel = new JPanel(new GridLayout(8, 2, 5, 5));
+        panel.add(new JLabel("Nodes:"));
+        panel.add(nodesField);
+        panel.add(new JLabel("Frames per Node (a,b,..):"));
+        panel.add(capacityField);
+        panel.add(new JLabel("Local Latency (ns, a,b,..):"));
+        panel.add(localField);
+        panel.add(new JLabel("Remote Latency (ns, a,b,..):"));
+        panel.add(remoteField);
+        panel.add(new JLabel("Placement Policy:"));
+        panel.add(policyBox);
+        panel.add(new JLabel("Bind Nodes (for BIND):"));
+        panel.add(bindField);
+        panel.add(new JLabel("Migration Threshold (votes):"));
+        panel.add(thresholdField);
+        panel.add(new JLabel());
+        panel.add(migrationBox);
+        if (JOptionPane.showConfirmDialog(this, panel, "NUMA Settings", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        try {
+            int nodes = Integer.parseInt(nodesField.getText().trim());
+            if (nodes <= 0) {
+                JOptionPane.showMessageDialog(this, "Node count must be positive!");
+                return;
+            }
+            int[] capacities = NumaTopology.perNode(capacityField.getText(), nodes);
+            int[] local = NumaTopology.perNode(localField.getText(), nodes);
+            int[] remote = NumaTopology.perNode(remoteField.getText(), nodes);
+            BitSet bind = new BitSet();
+            for (int node : NumaTopology.perNode(bindField.getText(), bindField.getText().split(",").length)) {
+                if (node < 0 || node >= nodes) {
+                    JOptionPane.showMessageDialog(this, "Bind node " + node + " does not exist!");
+                    return;
+                }
+                bind.set(node);
+            }
+            int threshold = Integer.parseInt(thresholdField.getText().trim());
+            NumaPolicy policy = (NumaPolicy) policyBox.getSelectedItem();
+            boolean migrate = migrationBox.isSelected();
+            if (threshold <= 0) {
+                JOptionPane.showMessageDialog(this, "Migration threshold must be positive!");
+                return;
+            }
+            boolean layoutChanged = !Arrays.equals(capacities, oldCapacities) || !Arrays.equals(local, oldLocal)
+                    || !Arrays.equals(remote, oldRemote);
+            executor.submit(() -> {
+                String result = "NUMA policy set to " + policy + (migrate ? " with migration" : "");
+                kernel.getNuma().setPolicy(policy);
+                if (layoutChanged) {
+                    result = kernel.configureNuma(capacities, local, remote);
+                }
+                if (!bind.equals(kernel.getNuma().getBindNodes())) {
+                    result += "\n" + kernel.bindNuma(bind);
+                }
+                kernel.getNuma().setMigration(migrate);
+                kernel.getNuma().setMigrationThreshold(threshold);
+                return result;
+            }, message -> JOptionPane.showMessageDialog(this, message));
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid input! " + ex.getMessage());
+        }
+    }
+    
+    private void pinProcess() {
+        JTextField pidField = new JTextField();
+        JTextField nodeField = new JTextField("0");
+        JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+        panel.add(new JLabel("Process ID:"));
+        panel.add(pidField);
+        panel.add(new JLabel("Node (-1 to unpin):"));
+        panel.add(nodeField);
+        if (JOptionPane.showConfirmDialog(this, panel, "Pin Process to NUMA Node", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        try {
+            int pid = Integer.parseInt(pidField.getText().trim());
+            int node = Integer.parseInt(nodeField.getText().trim());
+            executor.submit(() -> kernel.pinProcess(pid, node), message -> JOptionPane.showMessageDialog(this, message));
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid input! Please enter valid numbers.");
+        }
+    }
+    
     private void applyLRU() {
         try {
             int maxPages = Integer.parseInt(maxPagesField.getText());
-            String result = kernel.applyLRU(maxPages);
-            updateDisplay();
-            JOptionPane.showMessageDialog(this, result, "LRU Result", JOptionPane.INFORMATION_MESSAGE);
+            executor.submit(() -> kernel.applyLRU(maxPages),
+                    result -> JOptionPane.showMessageDialog(this, result, "LRU Result", JOptionPane.INFORMATION_MESSAGE));
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Invalid max pages value!", "Error", JOptionPane.ERROR_MESSAGE);
         }
@@ -772,15 +5817,63 @@ class MemoryManagementWindow extends JFrame {
         sb.append("           MEMORY MANAGEMENT SYSTEM\n");
         sb.append("═══════════════════════════════════════════════════\n\n");
         sb.append("Page Size: ").append(kernel.getPageSize()).append(" bytes\n");
-        sb.append("Total Pages Allocated: ").append(kernel.getPageTable().size()).append("\n\n");
+        sb.append("Total Pages Allocated: ").append(kernel.getPageTable().size()).append("\n");
+        
+        SwapDevice swap = kernel.getSwap();
+        LatencyHistogram faults = kernel.getFaultLatency();
+        sb.append(String.format("Swapped Out Pages: %d   Swap I/O: %d KB in / %d KB out   Read-ahead in flight: %d\n",
+                kernel.getSwappedPages().size(), swap.getBytesRead() / 1024, swap.getBytesWritten() / 1024, swap.getPendingReads()));
+        sb.append(String.format("Faults: %d zero-fill, %d from swap   Prefetch Depth: %d   Prefetched: %d   Prefetch Hits: %d\n",
+                kernel.getMinorFaults(), kernel.getMajorFaults(), kernel.getPrefetchDepth(),
+                kernel.getPrefetchedPages(), kernel.getPrefetchHits()));
+        sb.append(String.format("Fault Latency: avg %.1f us   p50 %.1f us   p99 %.1f us   total %.1f ms\n",
+                faults.getCount() == 0 ? 0.0 : faults.getSum() / 1000.0 / faults.getCount(),
+                faults.percentile(0.5) / 1000.0, faults.percentile(0.99) / 1000.0, faults.getSum() / 1e6));
+        sb.append(String.format("Shared (COW) Memory Saved: %d KB\n", kernel.getSharedBytesSaved() / 1024));
+        sb.append(String.format("COW Faults: %d   Bytes Copied: %d KB   Avg Fault Cost: %.1f us\n\n",
+                kernel.getCowFaults(), kernel.getCowBytesCopied() / 1024,
+                kernel.getCowFaults() == 0 ? 0.0 : kernel.getCowFaultNanos() / 1000.0 / kernel.getCowFaults()));
+        
+        NumaTopology numa = kernel.getNuma();
+        sb.append(String.format("NUMA (%d nodes, %s%s%s):\n", numa.getNodes().length, numa.getPolicy(),
+                numa.getPolicy() == NumaPolicy.BIND ? " to " + numa.getBindNodes() : "", numa.isMigration() ? ", migration on" : ""));
+        sb.append("─────────────────────────────────────────────────\n");
+        sb.append(String.format("References: %d   Remote: %.1f%%   Effective Latency: %.1f ns   Migrations: %d (%d KB)   Spills: %d\n",
+                numa.getAccesses(), 100 * numa.getRemoteRatio(), numa.getEffectiveLatency(),
+                numa.getMigrations(), numa.getMigrations() * kernel.getPageSize() / 1024, numa.getSpills()));
+        if (numa.getPolicy() == NumaPolicy.BIND) {
+            sb.append(String.format("Bind Reclaims: %d   Overcommitted: %d\n", numa.getReclaims(), numa.getOvercommits()));
+        }
+        sb.append(String.format("%-6s | %-14s | %-14s | %-12s | %s\n", "Node", "Frames Used", "Latency (ns)", "Local Refs", "Remote Refs"));
+        for (NumaNode n : numa.getNodes()) {
+            sb.append(String.format("%-6d | %-14s | %-14s | %-12d | %d\n", n.id, n.used + " / " + n.capacity,
+                    n.localLatency + " / " + n.remoteLatency, n.localAccesses, n.remoteAccesses));
+        }
+        sb.append("\n");
+        
+        WorkingSetManager ws = kernel.getWorkingSets();
+        sb.append("WORKING SETS (window Δ = ").append(ws.getWindow()).append(" references):\n");
+        sb.append("─────────────────────────────────────────────────\n");
+        sb.append(String.format("Demand: %d / %d frames   Fault Rate: %.3f   %s\n",
+                ws.getDemand(), kernel.getFrameCapacity(), ws.getSystemFaultRate(),
+                ws.isThrashing(kernel.getFrameCapacity()) ? "THRASHING" : "OK"));
+        sb.append(String.format("References: %d   Faults: %d   Load Suspensions: %d   Resumptions: %d\n",
+                ws.getReferences(), ws.getFaults(), kernel.getLoadSuspensions(), kernel.getLoadResumptions()));
+        sb.append(String.format("%-8s | %-10s | %-8s | %-8s | %-8s | %s\n", "Process", "State", "WS", "Resident", "Faults", "Fault Rate"));
+        for (PCB p : kernel.getAllProcesses()) {
+            int pid = p.getProcessId();
+            sb.append(String.format("P%-7d | %-10s | %-8d | %-8d | %-8d | %.3f\n", pid, p.getState(),
+                    ws.getWorkingSetSize(pid), ws.getResidentCount(pid), ws.getFaults(pid), ws.getFaultRate(pid)));
+        }
+        sb.append("\n");
         
         if (kernel.getPageTable().isEmpty()) {
             sb.append("No pages allocated yet.\n");
-            sb.append("\nTip: Create processes to allocate pages!\n");
+            sb.append("\nTip: Create processes and simulate page accesses to fault pages in!\n");
         } else {
             sb.append("PAGE TABLE (Sorted by Last Access Time):\n");
             sb.append("─────────────────────────────────────────────────\n");
-            sb.append(String.format("%-8s | %-12s | %-15s | %s\n", "Page#", "Process", "Access Count", "Last Accessed"));
+            sb.append(String.format("%-8s | %-12s | %-15s | %-6s | %s\n", "Page#", "Process", "Access Count", "Refs", "Last Accessed"));
             sb.append("─────────────────────────────────────────────────\n");
             
             // Sort pages by last accessed time
@@ -792,10 +5885,11 @@ class MemoryManagementWindow extends JFrame {
                 long timeDiff = System.currentTimeMillis() - page.getLastAccessed();
                 String timeStr = timeDiff < 1000 ? "Just now" : (timeDiff/1000) + "s ago";
                 
-                sb.append(String.format("%-8d | P%-11d | %-15d | %s\n", 
+                sb.append(String.format("%-8d | P%-11d | %-15d | %-6s | %s\n", 
                         entry.getKey(), 
                         page.getProcessId(), 
                         page.getAccessCount(),
+                        page.getRefCount() + (page.isCopyOnWrite() ? " COW" : ""),
                         timeStr));
             }
             
@@ -833,34 +5927,31 @@ class MemoryManagementWindow extends JFrame {
         JButton allocateBtn = new JButton("Allocate Process");
         allocateBtn.setFont(new Font("Arial", Font.PLAIN, 11));
         allocateBtn.addActionListener(e -> {
-            List<PCB> processes = kernel.getAllProcesses();
-            if (processes.isEmpty()) {
+            Object[] options = executor.read(() -> kernel.getAllProcesses().toArray());
+            if (options.length == 0) {
                 JOptionPane.showMessageDialog(dialog, "No processes available! Create processes first.");
                 return;
             }
             
-            Object[] options = processes.toArray();
             PCB selected = (PCB) JOptionPane.showInputDialog(dialog, 
                     "Select process to allocate:", "Allocate Process",
                     JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
             
             if (selected != null) {
-                String result = kernel.allocateFixedPartition(selected);
-                JOptionPane.showMessageDialog(dialog, result);
-                updatePartitionDisplay(partitionArea);
+                executor.submit(() -> kernel.allocateFixedPartition(selected),
+                        result -> JOptionPane.showMessageDialog(dialog, result));
             }
         });
         
         JButton deallocateBtn = new JButton("Deallocate Partition");
         deallocateBtn.setFont(new Font("Arial", Font.PLAIN, 11));
         deallocateBtn.addActionListener(e -> {
-            String input = JOptionPane.showInputDialog(dialog, "Enter partition ID (1-5):");
+            String input = JOptionPane.showInputDialog(dialog, "Enter partition ID:");
             if (input != null && !input.trim().isEmpty()) {
                 try {
                     int partId = Integer.parseInt(input);
-                    String result = kernel.deallocateFixedPartition(partId);
-                    JOptionPane.showMessageDialog(dialog, result);
-                    updatePartitionDisplay(partitionArea);
+                    executor.submit(() -> kernel.deallocateFixedPartition(partId),
+                            result -> JOptionPane.showMessageDialog(dialog, result));
                 } catch (NumberFormatException ex) {
                     JOptionPane.showMessageDialog(dialog, "Invalid partition ID!");
                 }
@@ -869,27 +5960,54 @@ class MemoryManagementWindow extends JFrame {
         
         JButton resetBtn = new JButton("Reset All Partitions");
         resetBtn.setFont(new Font("Arial", Font.PLAIN, 11));
-        resetBtn.addActionListener(e -> {
+        resetBtn.addActionListener(e -> executor.submit(() -> {
             kernel.resetPartitions();
-            JOptionPane.showMessageDialog(dialog, "All partitions reset!");
-            updatePartitionDisplay(partitionArea);
+            return null;
+        }, ignored -> JOptionPane.showMessageDialog(dialog, "All partitions reset!")));
+        
+        JButton compactBtn = new JButton("Compact Memory");
+        compactBtn.setFont(new Font("Arial", Font.PLAIN, 11));
+        compactBtn.addActionListener(e -> executor.submit(() -> kernel.compactMemory(),
+                result -> JOptionPane.showMessageDialog(dialog, result)));
+        
+        JButton budgetBtn = new JButton("Compaction Budget...");
+        budgetBtn.setFont(new Font("Arial", Font.PLAIN, 11));
+        budgetBtn.addActionListener(e -> {
+            int current = executor.read(() -> kernel.getCompactor().getBudgetKb());
+            String input = JOptionPane.showInputDialog(dialog, "KB moved per scheduler tick:", current);
+            if (input != null && !input.trim().isEmpty()) {
+                try {
+                    int budget = Integer.parseInt(input.trim());
+                    if (budget <= 0) {
+                        JOptionPane.showMessageDialog(dialog, "Budget must be positive!");
+                        return;
+                    }
+                    executor.submit(() -> kernel.getCompactor().setBudgetKb(budget));
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(dialog, "Invalid budget!");
+                }
+            }
         });
         
         JButton refreshBtn = new JButton("Refresh");
         refreshBtn.setFont(new Font("Arial", Font.PLAIN, 11));
-        refreshBtn.addActionListener(e -> updatePartitionDisplay(partitionArea));
+        refreshBtn.addActionListener(e -> executor.requestRefresh());
         
         btnPanel.add(allocateBtn);
         btnPanel.add(deallocateBtn);
         btnPanel.add(resetBtn);
+        btnPanel.add(compactBtn);
+        btnPanel.add(budgetBtn);
         btnPanel.add(refreshBtn);
         
         dialog.add(btnPanel, BorderLayout.NORTH);
         dialog.add(new JScrollPane(partitionArea), BorderLayout.CENTER);
         
-        updatePartitionDisplay(partitionArea);
+        Runnable refresh = () -> updatePartitionDisplay(partitionArea);
+        executor.addRefreshListener(refresh);
         dialog.setLocationRelativeTo(this);
         dialog.setVisible(true);
+        executor.removeRefreshListener(refresh);
     }
     
     private void updatePartitionDisplay(JTextArea area) {
@@ -943,6 +6061,26 @@ class MemoryManagementWindow extends JFrame {
             if (p.isAllocated()) allocatedCount++;
         }
         sb.append(String.format("Partitions Allocated:      %d / %d\n", allocatedCount, kernel.getPartitions().size()));
+        int largestFree = 0;
+        for (Partition p : kernel.getPartitions()) {
+            if (!p.isAllocated()) largestFree = Math.max(largestFree, p.getSize());
+        }
+        sb.append(String.format("Largest Free Block:        %d KB\n", largestFree));
+        
+        CompactionEngine compactor = kernel.getCompactor();
+        long attempts = kernel.getAllocationAttempts();
+        sb.append("\n");
+        sb.append("COMPACTION:\n");
+        sb.append("───────────────────────────────────────────────────────────────────\n");
+        sb.append(String.format("Compactions: %d   Moves: %d   KB Moved: %d   Budget: %d KB/tick\n",
+                compactor.getCompactions(), compactor.getMoves(), compactor.getMovedKb(), compactor.getBudgetKb()));
+        sb.append(String.format("Last Plan: %s (%d KB)%s\n", compactor.getStrategy(), compactor.getPlannedKb(),
+                compactor.isActive() ? String.format("   IN PROGRESS, %d KB left, %d waiting",
+                        compactor.getRemainingKb(), kernel.getPendingAllocations().size()) : ""));
+        sb.append(String.format("Allocation Success: %.1f%% first fit alone, %.1f%% with compaction (%d attempts)\n",
+                attempts == 0 ? 0.0 : 100.0 * kernel.getFirstFitAllocations() / attempts,
+                attempts == 0 ? 0.0 : 100.0 * (kernel.getFirstFitAllocations() + kernel.getCompactedAllocations()) / attempts,
+                attempts));
         
         sb.append("\n");
         sb.append("VISUAL REPRESENTATION:\n");
@@ -964,35 +6102,326 @@ class MemoryManagementWindow extends JFrame {
     }
 }
 
+// Strip Chart - one pixel column per history bucket, painted incrementally into a back buffer
+class StripChart extends JComponent {
+    private static final int HEIGHT = 70;
+    
+    private String label;
+    private BufferedImage buffer;
+    private int paintedBuckets;
+    private int paintedGeneration = -1;
+    private double paintedScale;
+    private Object paintedSource;
+    
+    public StripChart(String label, int width) {
+        this.label = label;
+        this.buffer = new BufferedImage(width, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        setPreferredSize(new Dimension(width, HEIGHT));
+        setBorder(BorderFactory.createTitledBorder(label));
+        clear();
+    }
+    
+    private void clear() {
+        Graphics2D g = buffer.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, buffer.getWidth(), buffer.getHeight());
+        g.dispose();
+        paintedBuckets = 0;
+    }
+    
+    // Gantt row: each column is coloured by the process that dominated that bucket
+    public void update(GanttHistory history) {
+        boolean full = history != paintedSource || history.getGeneration() != paintedGeneration;
+        paintedSource = history;
+        int from = beginUpdate(full, history.getGeneration());
+        Graphics2D g = buffer.createGraphics();
+        for (int i = from; i < history.size(); i++) {
+            int pid = history.pidAt(i);
+            g.setColor(pid < 0 ? new Color(225, 225, 225) : colorFor(pid));
+            g.drawLine(i, 0, i, HEIGHT - 1);
+        }
+        g.dispose();
+        endUpdate(full, from, history.size());
+    }
+    
+    // Metric row: column height proportional to the bucket value, rescaled when the maximum grows
+    public void update(DownsampledSeries series, boolean useSum) {
+        double scale = 1;
+        while (scale < series.getMax() * (useSum ? series.getBucketTicks() : 1)) scale *= 2;
+        boolean full = series != paintedSource || series.getGeneration() != paintedGeneration || scale != paintedScale;
+        paintedSource = series;
+        paintedScale = scale;
+        int from = beginUpdate(full, series.getGeneration());
+        Graphics2D g = buffer.createGraphics();
+        for (int i = from; i < series.size(); i++) {
+            double value = useSum ? series.sum(i) : series.mean(i);
+            int h = (int) Math.round(value / scale * (HEIGHT - 2));
+            g.setColor(Color.WHITE);
+            g.drawLine(i, 0, i, HEIGHT - 1);
+            g.setColor(new Color(70, 130, 180));
+            if (h > 0) g.drawLine(i, HEIGHT - 1, i, HEIGHT - 1 - h);
+        }
+        g.dispose();
+        endUpdate(full, from, series.size());
+    }
+    
+    private int beginUpdate(boolean full, int generation) {
+        if (full) {
+            clear();
+            paintedGeneration = generation;
+            return 0;
+        }
+        return Math.max(0, paintedBuckets - 1); // last bucket may have been partial
+    }
+    
+    private void endUpdate(boolean full, int from, int to) {
+        paintedBuckets = to;
+        if (full) {
+            repaint();
+        } else if (to > from) {
+            Insets in = getInsets();
+            repaint(in.left + from, in.top, to - from, HEIGHT);
+        }
+    }
+    
+    private static Color colorFor(int pid) {
+        return Color.getHSBColor((pid * 0.618034f) % 1f, 0.55f, 0.9f);
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        Insets in = getInsets();
+        g.drawImage(buffer, in.left, in.top, null);
+    }
+    
+    @Override
+    public Dimension getPreferredSize() {
+        Insets in = getInsets();
+        return new Dimension(buffer.getWidth() + in.left + in.right, HEIGHT + in.top + in.bottom);
+    }
+}
+
+// Timeline Window - live Gantt chart and scheduler metrics
+class TimelineWindow extends JFrame {
+    private Kernel kernel;
+    private SimulationExecutor executor;
+    private StripChart ganttChart;
+    private StripChart throughputChart;
+    private StripChart utilisationChart;
+    private StripChart queueChart;
+    private JLabel summaryLabel;
+    private JTextArea eventArea;
+    
+    public TimelineWindow(Kernel kernel, SimulationExecutor executor) {
+        this.kernel = kernel;
+        this.executor = executor;
+        setTitle("Timeline & Metrics");
+        setSize(1100, 650);
+        setLayout(new BorderLayout(10, 10));
+        
+        int width = EventRecorder.HISTORY_BUCKETS;
+        ganttChart = new StripChart("Gantt (dominant process per bucket)", width);
+        throughputChart = new StripChart("Throughput (completions per bucket)", width);
+        utilisationChart = new StripChart("CPU Utilisation", width);
+        queueChart = new StripChart("Ready Queue Length", width);
+        
+        JPanel charts = new JPanel(new GridLayout(4, 1, 5, 5));
+        charts.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        charts.add(ganttChart);
+        charts.add(throughputChart);
+        charts.add(utilisationChart);
+        charts.add(queueChart);
+        
+        summaryLabel = new JLabel();
+        summaryLabel.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        summaryLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 0, 10));
+        
+        eventArea = new JTextArea(8, 40);
+        eventArea.setEditable(false);
+        eventArea.setFont(new Font("Monospaced", Font.PLAIN, 11));
+        
+        add(summaryLabel, BorderLayout.NORTH);
+        add(new JScrollPane(charts), BorderLayout.CENTER);
+        add(new JScrollPane(eventArea), BorderLayout.SOUTH);
+        
+        Runnable refresh = this::updateDisplay;
+        executor.addRefreshListener(refresh);
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                executor.removeRefreshListener(refresh);
+            }
+        });
+        setLocationRelativeTo(null);
+        setVisible(true);
+    }
+    
+    private void updateDisplay() {
+        EventRecorder rec = kernel.getRecorder();
+        ganttChart.update(rec.getGantt());
+        throughputChart.update(rec.getThroughput(), true);
+        utilisationChart.update(rec.getUtilisation(), false);
+        queueChart.update(rec.getQueueLength(), false);
+        
+        long clock = kernel.getClock();
+        long elapsed = clock - rec.getOriginTick();
+        double utilisation = elapsed == 0 ? 0 : 100.0 * rec.getBusyTicks() / elapsed;
+        double throughput = elapsed == 0 ? 0 : (double) rec.getTotalCompletions() / elapsed;
+        summaryLabel.setText(String.format("Clock: %,d   Ticks/bucket: %,d   Completed: %,d   Throughput: %.4f/tick   Utilisation: %.1f%%   Events: %,d",
+                clock, rec.getGantt().getBucketTicks(), rec.getTotalCompletions(), throughput, utilisation, rec.getTotalEvents()));
+        
+        StringBuilder sb = new StringBuilder();
+        for (String event : rec.recentEvents(50)) {
+            sb.append(event).append("\n");
+        }
+        eventArea.setText(sb.toString());
+        eventArea.setCaretPosition(eventArea.getDocument().getLength());
+    }
+}
+
 // Configuration Window
 class ConfigurationWindow extends JFrame {
+    private static KernelSnapshot checkpoint; // shared across window instances
+    
     private Kernel kernel;
+    private SimulationExecutor executor;
     
-    public ConfigurationWindow(Kernel kernel) {
+    public ConfigurationWindow(Kernel kernel, SimulationExecutor executor) {
         this.kernel = kernel;
+        this.executor = executor;
         setTitle("Configuration");
-        setSize(400, 300);
-        setLayout(new GridLayout(4, 2, 10, 10));
+        setSize(400, 500);
+        setLayout(new GridLayout(10, 2, 10, 10));
         ((JPanel)getContentPane()).setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
         
+        // One locked read for every current value: the worker may be mid-run
+        int[] current = executor.read(() -> new int[] {kernel.getPageSize(), kernel.getFrameCapacity(),
+                kernel.getWorkingSets().getWindow(), kernel.getPrefetchDepth()});
+        
         add(new JLabel("Page Size (bytes):"));
-        JTextField pageSizeField = new JTextField(String.valueOf(kernel.getPageSize()));
+        JTextField pageSizeField = new JTextField(String.valueOf(current[0]));
         add(pageSizeField);
         
+        add(new JLabel("Physical Frames:"));
+        JTextField framesField = new JTextField(String.valueOf(current[1]));
+        add(framesField);
+        
+        add(new JLabel("Working Set Window (Δ):"));
+        JTextField windowField = new JTextField(String.valueOf(current[2]));
+        add(windowField);
+        
+        add(new JLabel("Prefetch Depth (pages):"));
+        JTextField prefetchField = new JTextField(String.valueOf(current[3]));
+        add(prefetchField);
+        
+        JCheckBox metricsBox = new JCheckBox("Enabled", executor.read(() -> kernel.getMetrics().isEnabled()));
+        add(new JLabel("Kernel Metrics:"));
+        add(metricsBox);
+        
+        add(new JLabel("Metrics Port (0 = off):"));
+        JTextField portField = new JTextField(String.valueOf(executor.getMetricsPort()));
+        add(portField);
+        
         JButton saveBtn = new JButton("Save Configuration");
         saveBtn.addActionListener(e -> {
             try {
                 int newPageSize = Integer.parseInt(pageSizeField.getText());
-                kernel.setPageSize(newPageSize);
+                int port = Integer.parseInt(portField.getText());
+                int frames = Integer.parseInt(framesField.getText());
+                int window = Integer.parseInt(windowField.getText());
+                int prefetch = Integer.parseInt(prefetchField.getText());
+                if (newPageSize <= 0 || newPageSize > Kernel.MAX_PAGE_SIZE) {
+                    JOptionPane.showMessageDialog(this, "Page size must be between 1 and " + Kernel.MAX_PAGE_SIZE + " bytes!");
+                    return;
+                }
+                if (frames <= 0 || window <= 0 || prefetch < 0) {
+                    JOptionPane.showMessageDialog(this, "Frames and window must be positive, prefetch depth non-negative!");
+                    return;
+                }
+                if (port < 0 || port > 65535) {
+                    JOptionPane.showMessageDialog(this, "Metrics port must be between 0 and 65535!");
+                    return;
+                }
+                boolean metricsOn = metricsBox.isSelected();
+                executor.submit(() -> {
+                    kernel.setPageSize(newPageSize);
+                    kernel.setFrameCapacity(frames);
+                    kernel.setPrefetchDepth(prefetch);
+                    if (window != kernel.getWorkingSets().getWindow()) {
+                        kernel.getWorkingSets().setWindow(window);
+                    }
+                    kernel.getMetrics().setEnabled(metricsOn);
+                });
+                executor.setMetricsPort(port);
                 JOptionPane.showMessageDialog(this, "Configuration saved!");
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "Invalid input!");
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "Could not start metrics endpoint: " + ex.getMessage());
             }
         });
         
-        add(new JLabel());
+        JButton metricsBtn = new JButton("Show Metrics");
+        metricsBtn.addActionListener(e -> {
+            JTextArea area = new JTextArea(executor.read(() -> kernel.getMetrics().toPrometheus()), 25, 80);
+            area.setEditable(false);
+            area.setFont(new Font("Monospaced", Font.PLAIN, 11));
+            JOptionPane.showMessageDialog(this, new JScrollPane(area), "Kernel Metrics", JOptionPane.PLAIN_MESSAGE);
+        });
+        
+        add(metricsBtn);
         add(saveBtn);
         
+        JButton checkpointBtn = new JButton("Checkpoint");
+        checkpointBtn.addActionListener(e -> executor.submit(kernel::snapshot, snapshot -> {
+            checkpoint = snapshot;
+            JOptionPane.showMessageDialog(this, "Checkpoint taken (" + snapshot.getProcessCount() + " processes)");
+        }));
+        
+        JButton rollbackBtn = new JButton("Restore Checkpoint");
+        rollbackBtn.addActionListener(e -> {
+            KernelSnapshot snapshot = checkpoint;
+            if (snapshot == null) {
+                JOptionPane.showMessageDialog(this, "No checkpoint taken yet!");
+                return;
+            }
+            executor.submit(() -> kernel.restore(snapshot));
+        });
+        
+        JButton saveSnapshotBtn = new JButton("Save Snapshot...");
+        saveSnapshotBtn.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            File file = chooser.getSelectedFile();
+            executor.submit(() -> {
+                try {
+                    kernel.snapshot().save(file);
+                    return "Snapshot saved to " + file.getName();
+                } catch (IOException ex) {
+                    return "Could not save snapshot: " + ex.getMessage();
+                }
+            }, message -> JOptionPane.showMessageDialog(this, message));
+        });
+        
+        JButton loadSnapshotBtn = new JButton("Load Snapshot...");
+        loadSnapshotBtn.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            File file = chooser.getSelectedFile();
+            executor.submit(() -> {
+                try {
+                    kernel.restore(KernelSnapshot.load(file));
+                    return "Snapshot loaded from " + file.getName();
+                } catch (IOException | IllegalArgumentException ex) {
+                    return "Could not load snapshot: " + ex.getMessage();
+                }
+            }, message -> JOptionPane.showMessageDialog(this, message));
+        });
+        
+        add(checkpointBtn);
+        add(rollbackBtn);
+        add(saveSnapshotBtn);
+        add(loadSnapshotBtn);
+        
         setLocationRelativeTo(null);
         setVisible(true);
     }